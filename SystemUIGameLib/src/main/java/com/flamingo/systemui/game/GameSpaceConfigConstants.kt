@@ -23,8 +23,3 @@ const val DEFAULT_GAMESPACE_DISABLE_HEADSUP = true
 const val DEFAULT_GAMESPACE_DISABLE_FULLSCREEN_INTENT = false
 const val DEFAULT_GAMESPACE_DISABLE_CALL_RINGING = true
 const val DEFAULT_GAMESPACE_HIDE_PRIVACY_INDICATORS = false
-
-// State config keys
-const val CONFIG_BACK_GESTURE_LOCKED = "back_gesture_locked"
-const val CONFIG_RINGER_MODE = "ringer_mode"
-const val CONFIG_SCREEN_RECORD = "screen_record"
\ No newline at end of file
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2022 FlamingoOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flamingo.systemui.game
+
+import android.media.AudioManager
+import android.os.Parcel
+import android.os.Parcelable
+
+/**
+ * State of game mode shared with the game space service. Setting a property
+ * to a new value marks it as changed, and only changed fields are written to
+ * a parcel, so an update only carries what actually changed. Receivers keep
+ * a full state and [merge] updates into it.
+ */
+class GameSpaceState() : Parcelable {
+
+    /** Bit mask of the FIELD_* values that changed. */
+    var changedFields = 0
+        private set
+
+    var isBackGestureLocked = false
+        set(value) {
+            if (field == value) return
+            field = value
+            changedFields = changedFields or FIELD_BACK_GESTURE_LOCKED
+        }
+
+    var ringerMode = AudioManager.RINGER_MODE_NORMAL
+        set(value) {
+            if (field == value) return
+            field = value
+            changedFields = changedFields or FIELD_RINGER_MODE
+        }
+
+    var isScreenRecording = false
+        set(value) {
+            if (field == value) return
+            field = value
+            changedFields = changedFields or FIELD_SCREEN_RECORD
+        }
+
+    private constructor(parcel: Parcel) : this() {
+        val start = parcel.dataPosition()
+        val size = parcel.readInt()
+        parcel.readInt() // version, newer ones only append fields
+        val fields = parcel.readInt()
+        if (fields and FIELD_BACK_GESTURE_LOCKED != 0) {
+            isBackGestureLocked = parcel.readInt() != 0
+        }
+        if (fields and FIELD_RINGER_MODE != 0) {
+            ringerMode = parcel.readInt()
+        }
+        if (fields and FIELD_SCREEN_RECORD != 0) {
+            isScreenRecording = parcel.readInt() != 0
+        }
+        changedFields = fields
+        // Skip whatever a newer version wrote after the fields we know.
+        parcel.setDataPosition(start + size)
+    }
+
+    fun hasChanged(field: Int) = changedFields and field != 0
+
+    /**
+     * Returns the changed fields as an update and marks them as sent,
+     * or null if nothing changed since the last call.
+     */
+    fun takeChanges(): GameSpaceState? {
+        if (changedFields == 0) return null
+        return copy(changedFields).also { changedFields = 0 }
+    }
+
+    /** Returns the whole state as an update, e.g. for a newly connected service. */
+    fun snapshot(): GameSpaceState {
+        changedFields = 0
+        return copy(FIELD_ALL)
+    }
+
+    /** Applies the fields changed in [update] to this state. */
+    fun merge(update: GameSpaceState) {
+        if (update.hasChanged(FIELD_BACK_GESTURE_LOCKED)) {
+            isBackGestureLocked = update.isBackGestureLocked
+        }
+        if (update.hasChanged(FIELD_RINGER_MODE)) {
+            ringerMode = update.ringerMode
+        }
+        if (update.hasChanged(FIELD_SCREEN_RECORD)) {
+            isScreenRecording = update.isScreenRecording
+        }
+    }
+
+    private fun copy(fields: Int) = GameSpaceState().also {
+        it.isBackGestureLocked = isBackGestureLocked
+        it.ringerMode = ringerMode
+        it.isScreenRecording = isScreenRecording
+        it.changedFields = fields
+    }
+
+    override fun writeToParcel(dest: Parcel, flags: Int) {
+        val start = dest.dataPosition()
+        dest.writeInt(0) // size, filled in below
+        dest.writeInt(VERSION)
+        dest.writeInt(changedFields)
+        if (hasChanged(FIELD_BACK_GESTURE_LOCKED)) {
+            dest.writeInt(if (isBackGestureLocked) 1 else 0)
+        }
+        if (hasChanged(FIELD_RINGER_MODE)) {
+            dest.writeInt(ringerMode)
+        }
+        if (hasChanged(FIELD_SCREEN_RECORD)) {
+            dest.writeInt(if (isScreenRecording) 1 else 0)
+        }
+        val end = dest.dataPosition()
+        dest.setDataPosition(start)
+        dest.writeInt(end - start)
+        dest.setDataPosition(end)
+    }
+
+    override fun describeContents() = 0
+
+    override fun toString() =
+        "GameSpaceState { changedFields = $changedFields, " +
+            "isBackGestureLocked = $isBackGestureLocked, " +
+            "ringerMode = $ringerMode, " +
+            "isScreenRecording = $isScreenRecording }"
+
+    companion object {
+        const val VERSION = 1
+
+        const val FIELD_BACK_GESTURE_LOCKED = 1
+        const val FIELD_RINGER_MODE = 1 shl 1
+        const val FIELD_SCREEN_RECORD = 1 shl 2
+        const val FIELD_ALL = FIELD_BACK_GESTURE_LOCKED or FIELD_RINGER_MODE or FIELD_SCREEN_RECORD
+
+        @JvmField
+        val CREATOR = object : Parcelable.Creator<GameSpaceState> {
+            override fun createFromParcel(source: Parcel) = GameSpaceState(source)
+
+            override fun newArray(size: Int) = arrayOfNulls<GameSpaceState>(size)
+        }
+    }
+}
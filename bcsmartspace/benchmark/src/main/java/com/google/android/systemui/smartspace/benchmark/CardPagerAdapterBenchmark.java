@@ -0,0 +1,90 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import android.app.smartspace.SmartspaceTarget;
+import android.view.ViewGroup;
+
+import com.google.android.systemui.smartspace.CardPagerAdapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CardPagerAdapter#setTargets} with every card bound. Each benchmark alternates between
+ * two lists so every call is a real update: a content change rebinds one card in place, while a
+ * reorder or an insertion goes through notifyDataSetChanged() and the getItemPosition()
+ * reconciliation of every card.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardPagerAdapterBenchmark {
+    @Param({"3", "8"})
+    public int targetCount;
+
+    private CardPagerAdapter mAdapter;
+    private PagerDriver mPager;
+    private List<SmartspaceTarget> mTargets;
+    private List<SmartspaceTarget> mReordered;
+    private List<SmartspaceTarget> mUpdated;
+    private List<SmartspaceTarget> mInserted;
+    private boolean mFlip;
+
+    @Setup
+    public void setUp() {
+        ViewGroup container = new ViewGroup(Targets.newContext());
+        mAdapter = new CardPagerAdapter(container);
+        mPager = new PagerDriver(container, mAdapter);
+
+        mTargets = Targets.createList(targetCount);
+        mReordered = new ArrayList<>(mTargets);
+        Collections.rotate(mReordered, 1);
+        mUpdated = new ArrayList<>(mTargets);
+        SmartspaceTarget last = mTargets.get(targetCount - 1);
+        mUpdated.set(
+                targetCount - 1,
+                Targets.create(last.getSmartspaceTargetId(), last.getFeatureType(), "Updated"));
+        mInserted = new ArrayList<>(mTargets);
+        mInserted.add(targetCount / 2, Targets.create("inserted", 4, "Inserted"));
+
+        mAdapter.setTargets(mTargets);
+        mPager.populate();
+    }
+
+    private int setTargets(List<SmartspaceTarget> other) {
+        mFlip = !mFlip;
+        mAdapter.setTargets(mFlip ? other : mTargets);
+        return mPager.getPageCount();
+    }
+
+    @Benchmark
+    public int updateContent() {
+        return setTargets(mUpdated);
+    }
+
+    @Benchmark
+    public int reorder() {
+        return setTargets(mReordered);
+    }
+
+    @Benchmark
+    public int insertAndRemove() {
+        return setTargets(mInserted);
+    }
+}
@@ -0,0 +1,54 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import android.app.smartspace.SmartspaceTarget;
+
+import com.google.android.systemui.smartspace.InstanceId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** {@link InstanceId#create} for the ids of a typical set of targets. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstanceIdBenchmark {
+    private SmartspaceTarget[] mTargets;
+    private String[] mSubcardIds;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        List<SmartspaceTarget> targets = Targets.createList(16);
+        mTargets = targets.toArray(new SmartspaceTarget[0]);
+        mSubcardIds = new String[mTargets.length];
+        for (int i = 0; i < mTargets.length; i++) {
+            mSubcardIds[i] = mTargets[i].getBaseAction().getExtras().getString("subcardId");
+        }
+    }
+
+    @Benchmark
+    public int fromTarget() {
+        mIndex = (mIndex + 1) & 15;
+        return InstanceId.create(mTargets[mIndex]);
+    }
+
+    @Benchmark
+    public int fromString() {
+        mIndex = (mIndex + 1) & 15;
+        return InstanceId.create(mSubcardIds[mIndex]);
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import android.database.DataSetObserver;
+import android.view.ViewGroup;
+
+import androidx.viewpager.widget.PagerAdapter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Drives a {@link PagerAdapter} the way ViewPager does when the data set changes, see
+ * ViewPager.dataSetChanged(). Unlike ViewPager every position keeps its page, so a change
+ * reconciles all cards and not only the ones around the current page.
+ */
+final class PagerDriver extends DataSetObserver {
+    private static final Comparator<ItemInfo> COMPARATOR =
+            (lhs, rhs) -> lhs.position - rhs.position;
+
+    private final ViewGroup mContainer;
+    private final PagerAdapter mAdapter;
+    private final ArrayList<ItemInfo> mItems = new ArrayList<>();
+
+    PagerDriver(ViewGroup container, PagerAdapter adapter) {
+        mContainer = container;
+        mAdapter = adapter;
+        adapter.registerDataSetObserver(this);
+    }
+
+    /** Instantiates a page for every position that has none. */
+    void populate() {
+        int count = mAdapter.getCount();
+        int index = 0;
+        for (int position = 0; position < count; position++) {
+            if (index < mItems.size() && mItems.get(index).position == position) {
+                index++;
+                continue;
+            }
+            ItemInfo itemInfo = new ItemInfo();
+            itemInfo.position = position;
+            itemInfo.object = mAdapter.instantiateItem(mContainer, position);
+            mItems.add(index++, itemInfo);
+        }
+    }
+
+    int getPageCount() {
+        return mItems.size();
+    }
+
+    @Override
+    public void onChanged() {
+        boolean needPopulate = mItems.size() < mAdapter.getCount();
+        for (int i = 0; i < mItems.size(); i++) {
+            ItemInfo itemInfo = mItems.get(i);
+            int newPos = mAdapter.getItemPosition(itemInfo.object);
+            if (newPos == PagerAdapter.POSITION_UNCHANGED) {
+                continue;
+            }
+            if (newPos == PagerAdapter.POSITION_NONE) {
+                mItems.remove(i);
+                i--;
+                mAdapter.destroyItem(mContainer, itemInfo.position, itemInfo.object);
+                needPopulate = true;
+                continue;
+            }
+            if (itemInfo.position != newPos) {
+                itemInfo.position = newPos;
+                needPopulate = true;
+            }
+        }
+        mItems.sort(COMPARATOR);
+        if (needPopulate) {
+            populate();
+        }
+    }
+
+    private static final class ItemInfo {
+        Object object;
+        int position;
+    }
+}
@@ -0,0 +1,104 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import android.content.Context;
+import android.util.ArrayMap;
+
+import com.android.systemui.smartspace.nano.SmartspaceProto.SmartSpaceCardMetadata;
+import com.android.systemui.smartspace.nano.SmartspaceProto.SmartSpaceSubcards;
+
+import com.google.android.systemui.smartspace.ProtoContainer;
+import com.google.android.systemui.smartspace.ProtoStore;
+import com.google.protobuf.nano.MessageNano;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProtoStore} round trips on the local disk. Every store is flushed, so each operation
+ * includes the append and the sync of the container file, which dominate on real devices too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtoStoreBenchmark {
+    @Param({"4", "32"})
+    public int recordCount;
+
+    private ProtoStore mProtoStore;
+    private ProtoContainer mContainer;
+    private SmartSpaceSubcards mMessage;
+    private String[] mKeys;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        Context context = Targets.newContext();
+        mMessage = new SmartSpaceSubcards();
+        mMessage.clickedSubcardIndex = 1;
+        mMessage.subcards = new SmartSpaceCardMetadata[3];
+        for (int i = 0; i < mMessage.subcards.length; i++) {
+            mMessage.subcards[i] = new SmartSpaceCardMetadata();
+            mMessage.subcards[i].instanceId = 0x5f3759df * (i + 1);
+            mMessage.subcards[i].cardTypeId = i + 1;
+        }
+
+        mKeys = new String[recordCount];
+        ArrayMap<String, byte[]> records = new ArrayMap<>(recordCount);
+        byte[] payload = MessageNano.toByteArray(mMessage);
+        for (int i = 0; i < recordCount; i++) {
+            mKeys[i] = "smartspace_record_" + i;
+            records.put(mKeys[i], payload);
+        }
+        mProtoStore = new ProtoStore(context);
+        for (String key : mKeys) {
+            mProtoStore.store(mMessage, key);
+        }
+        mProtoStore.flush();
+        mContainer = new ProtoContainer(new File(context.getFilesDir(), "container_reads"));
+        mContainer.writeAll(records);
+    }
+
+    private String nextKey() {
+        mIndex = (mIndex + 1) % recordCount;
+        return mKeys[mIndex];
+    }
+
+    @Benchmark
+    public boolean storeFlushLoad() {
+        String key = nextKey();
+        mProtoStore.store(mMessage, key);
+        mProtoStore.flush();
+        return mProtoStore.load(key, new SmartSpaceSubcards());
+    }
+
+    @Benchmark
+    public boolean load() {
+        return mProtoStore.load(nextKey(), new SmartSpaceSubcards());
+    }
+
+    @Benchmark
+    public byte[] containerRead() throws IOException {
+        return mContainer.read(nextKey());
+    }
+
+    @Benchmark
+    public ArrayMap<String, byte[]> containerReadAll() throws IOException {
+        return mContainer.readAll();
+    }
+}
@@ -0,0 +1,58 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggerUtil;
+import com.google.android.systemui.smartspace.logging.BcSmartspaceSubcardLoggingInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Encoding of the subcards logged with every card event. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubcardEncodingBenchmark {
+    @Param({"1", "3", "8"})
+    public int subcardCount;
+
+    private int[] mInstanceIds;
+    private int[] mCardTypeIds;
+    private BcSmartspaceSubcardLoggingInfo mSubcardInfo;
+
+    @Setup
+    public void setUp() {
+        mInstanceIds = new int[subcardCount];
+        mCardTypeIds = new int[subcardCount];
+        mSubcardInfo = new BcSmartspaceSubcardLoggingInfo.Builder().build();
+        for (int i = 0; i < subcardCount; i++) {
+            mInstanceIds[i] = 0x5f3759df * (i + 1);
+            mCardTypeIds[i] = i + 1;
+            mSubcardInfo.addSubcard(mInstanceIds[i], mCardTypeIds[i]);
+        }
+        mSubcardInfo.setClickedSubcardIndex(subcardCount - 1);
+    }
+
+    @Benchmark
+    public byte[] fromArrays() {
+        return BcSmartspaceCardLoggerUtil.convertSubcardInfoToBytes(
+                subcardCount - 1, mInstanceIds, mCardTypeIds);
+    }
+
+    @Benchmark
+    public byte[] fromLoggingInfo() {
+        return BcSmartspaceCardLoggerUtil.convertSubcardInfoToBytes(mSubcardInfo);
+    }
+}
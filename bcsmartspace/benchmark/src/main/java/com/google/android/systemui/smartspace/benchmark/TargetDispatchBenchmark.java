@@ -0,0 +1,84 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import android.app.smartspace.SmartspaceTarget;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.view.Choreographer;
+
+import com.android.systemui.plugins.BcSmartspaceDataPlugin;
+
+import com.google.android.systemui.smartspace.BcSmartspaceDataProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BcSmartspaceDataProvider#onTargetsAvailable} on the main thread up to the listeners,
+ * including the filtering of feature type 15 and the frame that dispatches the update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TargetDispatchBenchmark {
+    @Param({"4", "16"})
+    public int targetCount;
+
+    private BcSmartspaceDataProvider mProvider;
+    private Choreographer mChoreographer;
+    private List<SmartspaceTarget> mTargets;
+    private List<SmartspaceTarget> mUpdated;
+    private List<SmartspaceTarget> mLatest;
+    private boolean mFlip;
+    private long mFrameTimeNanos;
+
+    @Setup
+    public void setUp() {
+        Looper.prepareMainLooper();
+        mChoreographer = Choreographer.getInstance();
+        mProvider = new BcSmartspaceDataProvider(Targets.newContext());
+        mProvider.registerListener(
+                new BcSmartspaceDataPlugin.SmartspaceTargetListener() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void onSmartspaceTargetsUpdated(List<? extends Parcelable> targets) {
+                        mLatest = (List<SmartspaceTarget>) targets;
+                    }
+                });
+
+        // A quarter of the targets are of feature type 15, which the provider drops.
+        mTargets = new ArrayList<>(Targets.createList(targetCount));
+        for (int i = 0; i < targetCount; i += 4) {
+            mTargets.set(i, Targets.create("filtered_" + i, 15, "Filtered " + i));
+        }
+        mUpdated = new ArrayList<>(mTargets);
+        SmartspaceTarget last = mTargets.get(targetCount - 1);
+        mUpdated.set(
+                targetCount - 1,
+                Targets.create(last.getSmartspaceTargetId(), last.getFeatureType(), "Updated"));
+    }
+
+    @Benchmark
+    public List<SmartspaceTarget> dispatch() {
+        mFlip = !mFlip;
+        mProvider.onTargetsAvailable(mFlip ? mUpdated : mTargets);
+        mFrameTimeNanos += 16_666_667L;
+        mChoreographer.doFrame(mFrameTimeNanos);
+        return mLatest;
+    }
+}
@@ -0,0 +1,60 @@
+package com.google.android.systemui.smartspace.benchmark;
+
+import android.app.smartspace.SmartspaceAction;
+import android.app.smartspace.SmartspaceTarget;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.UserHandle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Targets and contexts shared by the benchmarks. */
+final class Targets {
+    // Feature types of the cards seen most, weather, calendar, flight, sports, shopping list...
+    private static final int[] FEATURE_TYPES = {2, 3, 4, 9, 10, 13, 14, 18, 20, 30};
+
+    private static final ComponentName COMPONENT_NAME =
+            new ComponentName("com.google.android.as", "SmartspaceService");
+
+    private Targets() {}
+
+    static Context newContext() {
+        try {
+            File dir = Files.createTempDirectory("smartspace-benchmark").toFile();
+            dir.deleteOnExit();
+            return new Context(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static SmartspaceTarget create(String id, int featureType, String title) {
+        Bundle extras = new Bundle();
+        extras.putInt("subcardType", featureType);
+        extras.putString("subcardId", id + "_subcard");
+        return new SmartspaceTarget.Builder(id, COMPONENT_NAME, UserHandle.CURRENT)
+                .setFeatureType(featureType)
+                .setCreationTimeMillis(1_700_000_000_000L)
+                .setHeaderAction(new SmartspaceAction.Builder(id + "_header", title).build())
+                .setBaseAction(
+                        new SmartspaceAction.Builder(id + "_base", title)
+                                .setExtras(extras)
+                                .build())
+                .build();
+    }
+
+    /** Returns count distinct targets with the usual mix of feature types. */
+    static List<SmartspaceTarget> createList(int count) {
+        List<SmartspaceTarget> targets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            targets.add(
+                    create("target_" + i, FEATURE_TYPES[i % FEATURE_TYPES.length], "Title " + i));
+        }
+        return targets;
+    }
+}
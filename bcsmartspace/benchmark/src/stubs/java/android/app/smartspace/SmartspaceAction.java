@@ -0,0 +1,68 @@
+package android.app.smartspace;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import java.util.Objects;
+
+/** Stub of the framework class for the benchmarks. */
+public final class SmartspaceAction implements Parcelable {
+    private final String mId;
+    private final CharSequence mTitle;
+    private final Bundle mExtras;
+
+    private SmartspaceAction(Builder builder) {
+        mId = builder.mId;
+        mTitle = builder.mTitle;
+        mExtras = builder.mExtras;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public CharSequence getTitle() {
+        return mTitle;
+    }
+
+    public Bundle getExtras() {
+        return mExtras;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SmartspaceAction)) {
+            return false;
+        }
+        SmartspaceAction action = (SmartspaceAction) obj;
+        return mId.equals(action.mId) && Objects.equals(mTitle, action.mTitle);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mId, mTitle);
+    }
+
+    public static final class Builder {
+        private final String mId;
+        private final CharSequence mTitle;
+        private Bundle mExtras;
+
+        public Builder(String id, String title) {
+            mId = id;
+            mTitle = title;
+        }
+
+        public Builder setExtras(Bundle extras) {
+            mExtras = extras;
+            return this;
+        }
+
+        public SmartspaceAction build() {
+            return new SmartspaceAction(this);
+        }
+    }
+}
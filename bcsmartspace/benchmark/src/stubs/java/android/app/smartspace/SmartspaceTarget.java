@@ -0,0 +1,201 @@
+package android.app.smartspace;
+
+import android.content.ComponentName;
+import android.os.Parcelable;
+import android.os.UserHandle;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Stub of the framework class for the benchmarks. Like the framework, equals() and hashCode()
+ * cover every field.
+ */
+public final class SmartspaceTarget implements Parcelable {
+    private final String mSmartspaceTargetId;
+    private final SmartspaceAction mHeaderAction;
+    private final SmartspaceAction mBaseAction;
+    private final long mCreationTimeMillis;
+    private final long mExpiryTimeMillis;
+    private final float mScore;
+    private final List<SmartspaceAction> mActionChips;
+    private final List<SmartspaceAction> mIconGrid;
+    private final int mFeatureType;
+    private final boolean mSensitive;
+    private final ComponentName mComponentName;
+    private final UserHandle mUserHandle;
+
+    private SmartspaceTarget(Builder builder) {
+        mSmartspaceTargetId = builder.mSmartspaceTargetId;
+        mHeaderAction = builder.mHeaderAction;
+        mBaseAction = builder.mBaseAction;
+        mCreationTimeMillis = builder.mCreationTimeMillis;
+        mExpiryTimeMillis = builder.mExpiryTimeMillis;
+        mScore = builder.mScore;
+        mActionChips = builder.mActionChips;
+        mIconGrid = builder.mIconGrid;
+        mFeatureType = builder.mFeatureType;
+        mSensitive = builder.mSensitive;
+        mComponentName = builder.mComponentName;
+        mUserHandle = builder.mUserHandle;
+    }
+
+    public String getSmartspaceTargetId() {
+        return mSmartspaceTargetId;
+    }
+
+    public SmartspaceAction getHeaderAction() {
+        return mHeaderAction;
+    }
+
+    public SmartspaceAction getBaseAction() {
+        return mBaseAction;
+    }
+
+    public long getCreationTimeMillis() {
+        return mCreationTimeMillis;
+    }
+
+    public long getExpiryTimeMillis() {
+        return mExpiryTimeMillis;
+    }
+
+    public float getScore() {
+        return mScore;
+    }
+
+    public List<SmartspaceAction> getActionChips() {
+        return mActionChips;
+    }
+
+    public List<SmartspaceAction> getIconGrid() {
+        return mIconGrid;
+    }
+
+    public int getFeatureType() {
+        return mFeatureType;
+    }
+
+    public boolean isSensitive() {
+        return mSensitive;
+    }
+
+    public ComponentName getComponentName() {
+        return mComponentName;
+    }
+
+    public UserHandle getUserHandle() {
+        return mUserHandle;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SmartspaceTarget)) {
+            return false;
+        }
+        SmartspaceTarget target = (SmartspaceTarget) obj;
+        return mSmartspaceTargetId.equals(target.mSmartspaceTargetId)
+                && Objects.equals(mHeaderAction, target.mHeaderAction)
+                && Objects.equals(mBaseAction, target.mBaseAction)
+                && mCreationTimeMillis == target.mCreationTimeMillis
+                && mExpiryTimeMillis == target.mExpiryTimeMillis
+                && mScore == target.mScore
+                && Objects.equals(mActionChips, target.mActionChips)
+                && Objects.equals(mIconGrid, target.mIconGrid)
+                && mFeatureType == target.mFeatureType
+                && mSensitive == target.mSensitive
+                && Objects.equals(mComponentName, target.mComponentName)
+                && Objects.equals(mUserHandle, target.mUserHandle);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+                mSmartspaceTargetId,
+                mHeaderAction,
+                mBaseAction,
+                mCreationTimeMillis,
+                mExpiryTimeMillis,
+                mScore,
+                mActionChips,
+                mIconGrid,
+                mFeatureType,
+                mSensitive,
+                mComponentName,
+                mUserHandle);
+    }
+
+    public static final class Builder {
+        private final String mSmartspaceTargetId;
+        private final ComponentName mComponentName;
+        private final UserHandle mUserHandle;
+        private SmartspaceAction mHeaderAction;
+        private SmartspaceAction mBaseAction;
+        private long mCreationTimeMillis;
+        private long mExpiryTimeMillis;
+        private float mScore;
+        private List<SmartspaceAction> mActionChips = Collections.emptyList();
+        private List<SmartspaceAction> mIconGrid = Collections.emptyList();
+        private int mFeatureType;
+        private boolean mSensitive;
+
+        public Builder(String smartspaceTargetId, ComponentName componentName, UserHandle user) {
+            mSmartspaceTargetId = smartspaceTargetId;
+            mComponentName = componentName;
+            mUserHandle = user;
+        }
+
+        public Builder setHeaderAction(SmartspaceAction headerAction) {
+            mHeaderAction = headerAction;
+            return this;
+        }
+
+        public Builder setBaseAction(SmartspaceAction baseAction) {
+            mBaseAction = baseAction;
+            return this;
+        }
+
+        public Builder setCreationTimeMillis(long creationTimeMillis) {
+            mCreationTimeMillis = creationTimeMillis;
+            return this;
+        }
+
+        public Builder setExpiryTimeMillis(long expiryTimeMillis) {
+            mExpiryTimeMillis = expiryTimeMillis;
+            return this;
+        }
+
+        public Builder setScore(float score) {
+            mScore = score;
+            return this;
+        }
+
+        public Builder setActionChips(List<SmartspaceAction> actionChips) {
+            mActionChips = actionChips;
+            return this;
+        }
+
+        public Builder setIconGrid(List<SmartspaceAction> iconGrid) {
+            mIconGrid = iconGrid;
+            return this;
+        }
+
+        public Builder setFeatureType(int featureType) {
+            mFeatureType = featureType;
+            return this;
+        }
+
+        public Builder setSensitive(boolean sensitive) {
+            mSensitive = sensitive;
+            return this;
+        }
+
+        public SmartspaceTarget build() {
+            return new SmartspaceTarget(this);
+        }
+    }
+}
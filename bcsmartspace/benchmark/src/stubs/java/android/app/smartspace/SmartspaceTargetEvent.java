@@ -0,0 +1,20 @@
+package android.app.smartspace;
+
+/** Stub of the framework class for the benchmarks. */
+public final class SmartspaceTargetEvent {
+    private final SmartspaceTarget mSmartspaceTarget;
+    private final int mEventType;
+
+    public SmartspaceTargetEvent(SmartspaceTarget smartspaceTarget, int eventType) {
+        mSmartspaceTarget = smartspaceTarget;
+        mEventType = eventType;
+    }
+
+    public SmartspaceTarget getSmartspaceTarget() {
+        return mSmartspaceTarget;
+    }
+
+    public int getEventType() {
+        return mEventType;
+    }
+}
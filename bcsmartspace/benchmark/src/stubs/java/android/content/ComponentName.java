@@ -0,0 +1,40 @@
+package android.content;
+
+import java.util.Objects;
+
+/** Stub of the framework class for the benchmarks. */
+public final class ComponentName {
+    private final String mPackage;
+    private final String mClass;
+
+    public ComponentName(String pkg, String cls) {
+        mPackage = pkg;
+        mClass = cls;
+    }
+
+    public ComponentName(Context pkg, Class<?> cls) {
+        this(pkg.getPackageName(), cls.getName());
+    }
+
+    public String getPackageName() {
+        return mPackage;
+    }
+
+    public String getClassName() {
+        return mClass;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ComponentName)) {
+            return false;
+        }
+        ComponentName componentName = (ComponentName) obj;
+        return mPackage.equals(componentName.mPackage) && mClass.equals(componentName.mClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mPackage, mClass);
+    }
+}
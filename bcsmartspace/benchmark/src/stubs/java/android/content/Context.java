@@ -0,0 +1,40 @@
+package android.content;
+
+import android.content.res.Resources;
+import android.os.UserHandle;
+
+import java.io.File;
+
+/** Stub of the framework class for the benchmarks, files are kept in the given directory. */
+public class Context {
+    private final File mFilesDir;
+    private final Resources mResources = new Resources();
+
+    public Context(File filesDir) {
+        mFilesDir = filesDir;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public String getPackageName() {
+        return "com.android.systemui";
+    }
+
+    public UserHandle getUser() {
+        return UserHandle.CURRENT;
+    }
+
+    public Resources getResources() {
+        return mResources;
+    }
+
+    public File getFilesDir() {
+        return mFilesDir;
+    }
+
+    public File getFileStreamPath(String name) {
+        return new File(mFilesDir, name);
+    }
+}
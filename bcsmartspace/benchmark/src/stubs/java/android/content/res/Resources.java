@@ -0,0 +1,16 @@
+package android.content.res;
+
+import com.android.systemui.bcsmartspace.R;
+
+/** Stub of the framework class for the benchmarks, only knows the values the plugin reads. */
+public class Resources {
+    public int getInteger(int id) {
+        if (id == R.integer.smartspace_card_pool_max_per_type) {
+            return 2;
+        }
+        if (id == R.integer.smartspace_update_window_ms) {
+            return 0;
+        }
+        throw new IllegalArgumentException("unknown resource " + id);
+    }
+}
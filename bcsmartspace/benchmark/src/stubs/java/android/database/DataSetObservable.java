@@ -0,0 +1,22 @@
+package android.database;
+
+import java.util.ArrayList;
+
+/** Stub of the framework class for the benchmarks. */
+public class DataSetObservable {
+    private final ArrayList<DataSetObserver> mObservers = new ArrayList<>();
+
+    public void registerObserver(DataSetObserver observer) {
+        mObservers.add(observer);
+    }
+
+    public void unregisterObserver(DataSetObserver observer) {
+        mObservers.remove(observer);
+    }
+
+    public void notifyChanged() {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            mObservers.get(i).onChanged();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package android.database;
+
+/** Stub of the framework class for the benchmarks. */
+public abstract class DataSetObserver {
+    public void onChanged() {}
+
+    public void onInvalidated() {}
+}
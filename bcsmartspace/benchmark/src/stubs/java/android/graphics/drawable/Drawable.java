@@ -0,0 +1,4 @@
+package android.graphics.drawable;
+
+/** Stub of the framework class for the benchmarks. */
+public abstract class Drawable {}
@@ -0,0 +1,53 @@
+package android.os;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+/** Stub of the framework class for the benchmarks, backed by a map. */
+public final class Bundle {
+    private final HashMap<String, Object> mMap = new HashMap<>();
+
+    public boolean isEmpty() {
+        return mMap.isEmpty();
+    }
+
+    public boolean containsKey(String key) {
+        return mMap.containsKey(key);
+    }
+
+    public Object get(String key) {
+        return mMap.get(key);
+    }
+
+    public void putInt(String key, int value) {
+        mMap.put(key, value);
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = mMap.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public void putString(String key, String value) {
+        mMap.put(key, value);
+    }
+
+    public String getString(String key) {
+        Object value = mMap.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Bundle && Objects.equals(mMap, ((Bundle) obj).mMap);
+    }
+
+    @Override
+    public int hashCode() {
+        return mMap.hashCode();
+    }
+}
@@ -0,0 +1,26 @@
+package android.os;
+
+/** Stub of the framework class for the benchmarks, delays are not honored. */
+public class Handler {
+    private final Looper mLooper;
+
+    public Handler(Looper looper) {
+        mLooper = looper;
+    }
+
+    public final boolean post(Runnable runnable) {
+        return mLooper.mQueue.add(runnable);
+    }
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis) {
+        return post(runnable);
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+        while (mLooper.mQueue.remove(runnable)) {}
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+}
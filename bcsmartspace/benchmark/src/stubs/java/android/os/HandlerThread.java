@@ -0,0 +1,33 @@
+package android.os;
+
+/** Stub of the framework class for the benchmarks. */
+public class HandlerThread extends Thread {
+    private Looper mLooper;
+
+    public HandlerThread(String name, int priority) {
+        super(name);
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        Looper.prepare();
+        synchronized (this) {
+            mLooper = Looper.myLooper();
+            notifyAll();
+        }
+        Looper.loop();
+    }
+
+    public synchronized Looper getLooper() {
+        while (mLooper == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return mLooper;
+    }
+}
@@ -0,0 +1,58 @@
+package android.os;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Stub of the framework class for the benchmarks. Messages are plain runnables, and the main
+ * looper is not looped by a thread of its own, benchmarks run what was posted to it with
+ * {@link #drain} instead.
+ */
+public final class Looper {
+    private static final ThreadLocal<Looper> sThreadLocal = new ThreadLocal<>();
+    private static Looper sMainLooper;
+
+    final BlockingQueue<Runnable> mQueue = new LinkedBlockingQueue<>();
+
+    private Looper() {}
+
+    public static void prepare() {
+        sThreadLocal.set(new Looper());
+    }
+
+    /** Makes a new looper of the calling thread the main looper. */
+    public static synchronized void prepareMainLooper() {
+        prepare();
+        sMainLooper = myLooper();
+    }
+
+    public static synchronized Looper getMainLooper() {
+        if (sMainLooper == null) {
+            sMainLooper = new Looper();
+        }
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return sThreadLocal.get();
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+        try {
+            while (true) {
+                looper.mQueue.take().run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Runs the messages queued so far on the calling thread. */
+    public void drain() {
+        Runnable runnable;
+        while ((runnable = mQueue.poll()) != null) {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package android.os;
+
+/** Stub of the framework interface, only used as a marker type by the plugin sources. */
+public interface Parcelable {}
@@ -0,0 +1,8 @@
+package android.os;
+
+/** Stub of the framework class for the benchmarks. */
+public final class Process {
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    private Process() {}
+}
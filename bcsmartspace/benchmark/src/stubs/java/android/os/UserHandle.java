@@ -0,0 +1,22 @@
+package android.os;
+
+/** Stub of the framework class for the benchmarks. */
+public final class UserHandle {
+    public static final UserHandle CURRENT = new UserHandle(-2);
+
+    private final int mHandle;
+
+    public UserHandle(int handle) {
+        mHandle = handle;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof UserHandle && ((UserHandle) obj).mHandle == mHandle;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHandle;
+    }
+}
@@ -0,0 +1,188 @@
+package android.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Stub of the framework class for the benchmarks. Like the framework, entries are kept in arrays
+ * sorted by key hash and found by binary search, so allocations match the real map.
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> {
+    private int[] mHashes;
+    private Object[] mArray;
+    private int mSize;
+
+    public ArrayMap() {
+        this(0);
+    }
+
+    public ArrayMap(int capacity) {
+        mHashes = new int[capacity];
+        mArray = new Object[capacity << 1];
+    }
+
+    public ArrayMap(Map<? extends K, ? extends V> map) {
+        this(map.size());
+        putAll(map);
+    }
+
+    private int indexOf(Object key, int hash) {
+        int index = Arrays.binarySearch(mHashes, 0, mSize, hash);
+        if (index < 0) {
+            return index;
+        }
+        if (Objects.equals(key, mArray[index << 1])) {
+            return index;
+        }
+        int end;
+        for (end = index + 1; end < mSize && mHashes[end] == hash; end++) {
+            if (Objects.equals(key, mArray[end << 1])) {
+                return end;
+            }
+        }
+        for (int i = index - 1; i >= 0 && mHashes[i] == hash; i--) {
+            if (Objects.equals(key, mArray[i << 1])) {
+                return i;
+            }
+        }
+        return ~end;
+    }
+
+    public int indexOfKey(Object key) {
+        return indexOf(key, key == null ? 0 : key.hashCode());
+    }
+
+    @SuppressWarnings("unchecked")
+    public K keyAt(int index) {
+        return (K) mArray[index << 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) mArray[(index << 1) + 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V setValueAt(int index, V value) {
+        V old = (V) mArray[(index << 1) + 1];
+        mArray[(index << 1) + 1] = value;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = indexOfKey(key);
+        return index >= 0 ? valueAt(index) : null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int hash = key == null ? 0 : key.hashCode();
+        int index = indexOf(key, hash);
+        if (index >= 0) {
+            return setValueAt(index, value);
+        }
+        index = ~index;
+        if (mSize >= mHashes.length) {
+            int capacity = mSize < 4 ? 4 : mSize < 8 ? 8 : mSize + (mSize >> 1);
+            mHashes = Arrays.copyOf(mHashes, capacity);
+            mArray = Arrays.copyOf(mArray, capacity << 1);
+        }
+        System.arraycopy(mHashes, index, mHashes, index + 1, mSize - index);
+        System.arraycopy(mArray, index << 1, mArray, (index + 1) << 1, (mSize - index) << 1);
+        mHashes[index] = hash;
+        mArray[index << 1] = key;
+        mArray[(index << 1) + 1] = value;
+        mSize++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = indexOfKey(key);
+        return index >= 0 ? removeAt(index) : null;
+    }
+
+    public V removeAt(int index) {
+        V old = valueAt(index);
+        System.arraycopy(mHashes, index + 1, mHashes, index, mSize - index - 1);
+        System.arraycopy(
+                mArray, (index + 1) << 1, mArray, index << 1, (mSize - index - 1) << 1);
+        mSize--;
+        mArray[mSize << 1] = null;
+        mArray[(mSize << 1) + 1] = null;
+        return old;
+    }
+
+    public boolean removeAll(Collection<?> collection) {
+        int size = mSize;
+        for (Object key : collection) {
+            remove(key);
+        }
+        return size != mSize;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mArray, 0, mSize << 1, null);
+        mSize = 0;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    private int mIndex = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return mIndex < mSize;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (mIndex >= mSize) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = mIndex++;
+                        return new SimpleEntry<>(keyAt(index), valueAt(index));
+                    }
+
+                    @Override
+                    public void remove() {
+                        removeAt(--mIndex);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+}
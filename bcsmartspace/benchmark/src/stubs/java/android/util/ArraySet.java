@@ -0,0 +1,114 @@
+package android.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Stub of the framework class for the benchmarks. Like the framework, values are kept in an
+ * array sorted by hash and found by binary search.
+ */
+public final class ArraySet<E> extends AbstractSet<E> {
+    private int[] mHashes = new int[0];
+    private Object[] mArray = new Object[0];
+    private int mSize;
+
+    private int indexOf(Object value) {
+        int hash = value == null ? 0 : value.hashCode();
+        int index = Arrays.binarySearch(mHashes, 0, mSize, hash);
+        if (index < 0) {
+            return index;
+        }
+        int start = index;
+        while (start > 0 && mHashes[start - 1] == hash) {
+            start--;
+        }
+        int end;
+        for (end = start; end < mSize && mHashes[end] == hash; end++) {
+            if (Objects.equals(value, mArray[end])) {
+                return end;
+            }
+        }
+        return ~end;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return indexOf(value) >= 0;
+    }
+
+    @Override
+    public boolean add(E value) {
+        int index = indexOf(value);
+        if (index >= 0) {
+            return false;
+        }
+        index = ~index;
+        if (mSize >= mHashes.length) {
+            int capacity = mSize < 4 ? 4 : mSize < 8 ? 8 : mSize + (mSize >> 1);
+            mHashes = Arrays.copyOf(mHashes, capacity);
+            mArray = Arrays.copyOf(mArray, capacity);
+        }
+        System.arraycopy(mHashes, index, mHashes, index + 1, mSize - index);
+        System.arraycopy(mArray, index, mArray, index + 1, mSize - index);
+        mHashes[index] = value == null ? 0 : value.hashCode();
+        mArray[index] = value;
+        mSize++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) mArray[index];
+    }
+
+    public E removeAt(int index) {
+        E old = valueAt(index);
+        System.arraycopy(mHashes, index + 1, mHashes, index, mSize - index - 1);
+        System.arraycopy(mArray, index + 1, mArray, index, mSize - index - 1);
+        mArray[--mSize] = null;
+        return old;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int mIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return mIndex < mSize;
+            }
+
+            @Override
+            public E next() {
+                if (mIndex >= mSize) {
+                    throw new NoSuchElementException();
+                }
+                return valueAt(mIndex++);
+            }
+
+            @Override
+            public void remove() {
+                removeAt(--mIndex);
+            }
+        };
+    }
+}
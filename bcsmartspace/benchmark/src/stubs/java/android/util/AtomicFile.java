@@ -0,0 +1,64 @@
+package android.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Stub of the framework class for the benchmarks. Writes go to a new file that is synced and
+ * renamed over the base file, like the framework does.
+ */
+public class AtomicFile {
+    private final File mBaseName;
+    private final File mNewName;
+
+    public AtomicFile(File baseName) {
+        mBaseName = baseName;
+        mNewName = new File(baseName.getPath() + ".new");
+    }
+
+    public File getBaseFile() {
+        return mBaseName;
+    }
+
+    public boolean exists() {
+        return mBaseName.exists() || mNewName.exists();
+    }
+
+    public void delete() {
+        mBaseName.delete();
+        mNewName.delete();
+    }
+
+    public FileOutputStream startWrite() throws IOException {
+        return new FileOutputStream(mNewName);
+    }
+
+    public void finishWrite(FileOutputStream str) {
+        try {
+            str.getFD().sync();
+            str.close();
+        } catch (IOException e) {
+            return;
+        }
+        mNewName.renameTo(mBaseName);
+    }
+
+    public void failWrite(FileOutputStream str) {
+        try {
+            str.close();
+        } catch (IOException e) {
+            // Deleted below anyway.
+        }
+        mNewName.delete();
+    }
+
+    public FileInputStream openRead() throws FileNotFoundException {
+        if (mNewName.exists() && !mBaseName.exists()) {
+            mNewName.renameTo(mBaseName);
+        }
+        return new FileInputStream(mBaseName);
+    }
+}
@@ -0,0 +1,38 @@
+package android.util;
+
+/** Stub of the framework class for the benchmarks, nothing is logged. */
+public final class Log {
+    private Log() {}
+
+    public static boolean isLoggable(String tag, int level) {
+        return false;
+    }
+
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+}
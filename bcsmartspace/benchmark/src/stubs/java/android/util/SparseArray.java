@@ -0,0 +1,70 @@
+package android.util;
+
+import java.util.Arrays;
+
+/** Stub of the framework class for the benchmarks, keys are kept sorted for binary search. */
+public class SparseArray<E> {
+    private int[] mKeys = new int[0];
+    private Object[] mValues = new Object[0];
+    private int mSize;
+
+    public int size() {
+        return mSize;
+    }
+
+    public E get(int key) {
+        return get(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int key, E valueIfKeyNotFound) {
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        return index >= 0 ? (E) mValues[index] : valueIfKeyNotFound;
+    }
+
+    public void put(int key, E value) {
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (index >= 0) {
+            mValues[index] = value;
+            return;
+        }
+        index = ~index;
+        if (mSize >= mKeys.length) {
+            int capacity = Math.max(4, mSize * 2);
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+        }
+        System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+        System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+        mKeys[index] = key;
+        mValues[index] = value;
+        mSize++;
+    }
+
+    public void remove(int key) {
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    public void removeAt(int index) {
+        System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+        System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+        mValues[--mSize] = null;
+    }
+
+    public int keyAt(int index) {
+        return mKeys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) mValues[index];
+    }
+
+    public void clear() {
+        Arrays.fill(mValues, 0, mSize, null);
+        mSize = 0;
+    }
+}
@@ -0,0 +1,46 @@
+package android.util;
+
+import java.util.Arrays;
+
+/** Stub of the framework class for the benchmarks, keys are kept sorted for binary search. */
+public class SparseIntArray {
+    private int[] mKeys = new int[0];
+    private int[] mValues = new int[0];
+    private int mSize;
+
+    public int size() {
+        return mSize;
+    }
+
+    public int get(int key) {
+        return get(key, 0);
+    }
+
+    public int get(int key, int valueIfKeyNotFound) {
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        return index >= 0 ? mValues[index] : valueIfKeyNotFound;
+    }
+
+    public void put(int key, int value) {
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (index >= 0) {
+            mValues[index] = value;
+            return;
+        }
+        index = ~index;
+        if (mSize >= mKeys.length) {
+            int capacity = Math.max(4, mSize * 2);
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+        }
+        System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+        System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+        mKeys[index] = key;
+        mValues[index] = value;
+        mSize++;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+}
@@ -0,0 +1,53 @@
+package android.view;
+
+import android.os.Looper;
+
+import java.util.ArrayList;
+
+/**
+ * Stub of the framework class for the benchmarks. There is no vsync, benchmarks run the posted
+ * callbacks with {@link #doFrame} instead.
+ */
+public final class Choreographer {
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final ThreadLocal<Choreographer> sThreadInstance =
+            ThreadLocal.withInitial(
+                    () -> {
+                        if (Looper.myLooper() == null) {
+                            throw new IllegalStateException(
+                                    "The current thread must have a looper!");
+                        }
+                        return new Choreographer();
+                    });
+
+    private ArrayList<FrameCallback> mCallbacks = new ArrayList<>();
+    private ArrayList<FrameCallback> mRunningCallbacks = new ArrayList<>();
+
+    private Choreographer() {}
+
+    public static Choreographer getInstance() {
+        return sThreadInstance.get();
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+        mCallbacks.add(callback);
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        while (mCallbacks.remove(callback)) {}
+    }
+
+    /** Runs the callbacks posted before this frame, callbacks they post wait for the next one. */
+    public void doFrame(long frameTimeNanos) {
+        ArrayList<FrameCallback> callbacks = mCallbacks;
+        mCallbacks = mRunningCallbacks;
+        mRunningCallbacks = callbacks;
+        for (int i = 0; i < callbacks.size(); i++) {
+            callbacks.get(i).doFrame(frameTimeNanos);
+        }
+        callbacks.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package android.view;
+
+import android.content.Context;
+
+/** Stub of the framework class for the benchmarks, layouts inflate to empty views. */
+public class LayoutInflater {
+    private final Context mContext;
+
+    private LayoutInflater(Context context) {
+        mContext = context;
+    }
+
+    public static LayoutInflater from(Context context) {
+        return new LayoutInflater(context);
+    }
+
+    public View inflate(int resource, ViewGroup root, boolean attachToRoot) {
+        View view = new View(mContext);
+        if (attachToRoot) {
+            root.addView(view);
+        }
+        return view;
+    }
+}
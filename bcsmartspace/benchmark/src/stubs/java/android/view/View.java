@@ -0,0 +1,43 @@
+package android.view;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+
+/** Stub of the framework class for the benchmarks, only tracks its parent and listeners. */
+public class View {
+    public interface OnAttachStateChangeListener {
+        void onViewAttachedToWindow(View view);
+
+        void onViewDetachedFromWindow(View view);
+    }
+
+    private final Context mContext;
+    ViewParent mParent;
+    private ArrayList<OnAttachStateChangeListener> mOnAttachStateChangeListeners;
+
+    public View(Context context) {
+        mContext = context;
+    }
+
+    public final Context getContext() {
+        return mContext;
+    }
+
+    public final ViewParent getParent() {
+        return mParent;
+    }
+
+    public void addOnAttachStateChangeListener(OnAttachStateChangeListener listener) {
+        if (mOnAttachStateChangeListeners == null) {
+            mOnAttachStateChangeListeners = new ArrayList<>();
+        }
+        mOnAttachStateChangeListeners.add(listener);
+    }
+
+    public void removeOnAttachStateChangeListener(OnAttachStateChangeListener listener) {
+        if (mOnAttachStateChangeListeners != null) {
+            mOnAttachStateChangeListeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package android.view;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+
+/** Stub of the framework class for the benchmarks, children are not laid out. */
+public class ViewGroup extends View implements ViewParent {
+    private final ArrayList<View> mChildren = new ArrayList<>();
+
+    public ViewGroup(Context context) {
+        super(context);
+    }
+
+    public void addView(View child) {
+        if (child.mParent != null) {
+            throw new IllegalStateException("The specified child already has a parent.");
+        }
+        mChildren.add(child);
+        child.mParent = this;
+    }
+
+    public void removeView(View view) {
+        if (mChildren.remove(view)) {
+            view.mParent = null;
+        }
+    }
+
+    public int getChildCount() {
+        return mChildren.size();
+    }
+
+    public View getChildAt(int index) {
+        return mChildren.get(index);
+    }
+}
@@ -0,0 +1,4 @@
+package android.view;
+
+/** Stub of the framework interface for the benchmarks. */
+public interface ViewParent {}
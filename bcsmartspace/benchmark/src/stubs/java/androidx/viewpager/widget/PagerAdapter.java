@@ -0,0 +1,43 @@
+package androidx.viewpager.widget;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+
+/** Stub of the library class for the benchmarks. */
+public abstract class PagerAdapter {
+    public static final int POSITION_UNCHANGED = -1;
+    public static final int POSITION_NONE = -2;
+
+    private final DataSetObservable mObservable = new DataSetObservable();
+
+    public abstract int getCount();
+
+    public abstract boolean isViewFromObject(View view, Object object);
+
+    public Object instantiateItem(ViewGroup container, int position) {
+        throw new UnsupportedOperationException(
+                "Required method instantiateItem was not overridden");
+    }
+
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        throw new UnsupportedOperationException("Required method destroyItem was not overridden");
+    }
+
+    public int getItemPosition(Object object) {
+        return POSITION_UNCHANGED;
+    }
+
+    public void notifyDataSetChanged() {
+        mObservable.notifyChanged();
+    }
+
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mObservable.registerObserver(observer);
+    }
+
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mObservable.unregisterObserver(observer);
+    }
+}
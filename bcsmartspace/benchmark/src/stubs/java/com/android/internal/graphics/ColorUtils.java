@@ -0,0 +1,15 @@
+package com.android.internal.graphics;
+
+/** Stub of the framework class for the benchmarks. */
+public final class ColorUtils {
+    private ColorUtils() {}
+
+    public static int blendARGB(int color1, int color2, float ratio) {
+        float inverseRatio = 1 - ratio;
+        float a = (color1 >>> 24) * inverseRatio + (color2 >>> 24) * ratio;
+        float r = ((color1 >> 16) & 0xff) * inverseRatio + ((color2 >> 16) & 0xff) * ratio;
+        float g = ((color1 >> 8) & 0xff) * inverseRatio + ((color2 >> 8) & 0xff) * ratio;
+        float b = (color1 & 0xff) * inverseRatio + (color2 & 0xff) * ratio;
+        return ((int) a << 24) | ((int) r << 16) | ((int) g << 8) | (int) b;
+    }
+}
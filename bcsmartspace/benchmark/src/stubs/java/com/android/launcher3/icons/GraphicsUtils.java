@@ -0,0 +1,12 @@
+package com.android.launcher3.icons;
+
+import android.content.Context;
+
+/** Stub of the launcher class for the benchmarks, every attribute resolves to white. */
+public final class GraphicsUtils {
+    private GraphicsUtils() {}
+
+    public static int getAttrColor(Context context, int attr) {
+        return 0xffffffff;
+    }
+}
@@ -0,0 +1,27 @@
+package com.android.systemui.bcsmartspace;
+
+/** Stub of the generated resource ids the benchmarked plugin sources use. */
+public final class R {
+    public static final class integer {
+        public static final int smartspace_card_pool_max_per_type = 0x7f0b0001;
+        public static final int smartspace_update_window_ms = 0x7f0b0002;
+    }
+
+    public static final class layout {
+        public static final int smartspace_base_card_doorbell = 0x7f0e0001;
+        public static final int smartspace_base_card_package_delivery = 0x7f0e0002;
+        public static final int smartspace_card = 0x7f0e0003;
+        public static final int smartspace_card_at_store = 0x7f0e0004;
+        public static final int smartspace_card_combination = 0x7f0e0005;
+        public static final int smartspace_card_combination_at_store = 0x7f0e0006;
+        public static final int smartspace_card_date = 0x7f0e0007;
+        public static final int smartspace_card_doorbell = 0x7f0e0008;
+        public static final int smartspace_card_flight = 0x7f0e0009;
+        public static final int smartspace_card_generic_landscape_image = 0x7f0e000a;
+        public static final int smartspace_card_loyalty = 0x7f0e000b;
+        public static final int smartspace_card_shopping_list = 0x7f0e000c;
+        public static final int smartspace_card_sports = 0x7f0e000d;
+        public static final int smartspace_card_weather_forecast = 0x7f0e000e;
+        public static final int smartspace_enhanced = 0x7f0e000f;
+    }
+}
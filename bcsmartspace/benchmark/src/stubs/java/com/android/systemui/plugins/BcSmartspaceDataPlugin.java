@@ -0,0 +1,36 @@
+package com.android.systemui.plugins;
+
+import android.app.smartspace.SmartspaceTarget;
+import android.app.smartspace.SmartspaceTargetEvent;
+import android.os.Parcelable;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+/** Stub of the plugin interface for the benchmarks. */
+public interface BcSmartspaceDataPlugin {
+    void registerListener(SmartspaceTargetListener listener);
+
+    void unregisterListener(SmartspaceTargetListener listener);
+
+    void registerSmartspaceEventNotifier(SmartspaceEventNotifier notifier);
+
+    void notifySmartspaceEvent(SmartspaceTargetEvent event);
+
+    SmartspaceView getView(ViewGroup parent);
+
+    void addOnAttachStateChangeListener(View.OnAttachStateChangeListener listener);
+
+    void onTargetsAvailable(List<SmartspaceTarget> targets);
+
+    interface SmartspaceTargetListener {
+        void onSmartspaceTargetsUpdated(List<? extends Parcelable> targets);
+    }
+
+    interface SmartspaceEventNotifier {
+        void notifySmartspaceEvent(SmartspaceTargetEvent event);
+    }
+
+    interface SmartspaceView {}
+}
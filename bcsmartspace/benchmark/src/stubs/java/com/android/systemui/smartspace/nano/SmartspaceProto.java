@@ -0,0 +1,163 @@
+package com.android.systemui.smartspace.nano;
+
+import com.google.protobuf.nano.CodedInputByteBufferNano;
+import com.google.protobuf.nano.CodedOutputByteBufferNano;
+import com.google.protobuf.nano.InvalidProtocolBufferNanoException;
+import com.google.protobuf.nano.MessageNano;
+import com.google.protobuf.nano.WireFormatNano;
+
+import java.io.IOException;
+
+/**
+ * The nano messages of proto/smartspace.proto, written the way the javanano generator emits them
+ * because the platform build that generates them is not available to the benchmarks.
+ */
+public interface SmartspaceProto {
+
+    final class SmartSpaceCardMetadata extends MessageNano {
+        public int instanceId;
+        public int cardTypeId;
+
+        public SmartSpaceCardMetadata() {
+            clear();
+        }
+
+        public SmartSpaceCardMetadata clear() {
+            instanceId = 0;
+            cardTypeId = 0;
+            cachedSize = -1;
+            return this;
+        }
+
+        @Override
+        public void writeTo(CodedOutputByteBufferNano output) throws IOException {
+            output.writeInt32(1, instanceId);
+            output.writeInt32(2, cardTypeId);
+            super.writeTo(output);
+        }
+
+        @Override
+        protected int computeSerializedSize() {
+            int size = super.computeSerializedSize();
+            size += CodedOutputByteBufferNano.computeInt32Size(1, instanceId);
+            size += CodedOutputByteBufferNano.computeInt32Size(2, cardTypeId);
+            return size;
+        }
+
+        @Override
+        public SmartSpaceCardMetadata mergeFrom(CodedInputByteBufferNano input)
+                throws IOException {
+            while (true) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        return this;
+                    case 8:
+                        instanceId = input.readInt32();
+                        break;
+                    case 16:
+                        cardTypeId = input.readInt32();
+                        break;
+                    default:
+                        if (!WireFormatNano.parseUnknownField(input, tag)) {
+                            return this;
+                        }
+                        break;
+                }
+            }
+        }
+
+        public static SmartSpaceCardMetadata parseFrom(byte[] data)
+                throws InvalidProtocolBufferNanoException {
+            return MessageNano.mergeFrom(new SmartSpaceCardMetadata(), data);
+        }
+    }
+
+    final class SmartSpaceSubcards extends MessageNano {
+        private static final SmartSpaceCardMetadata[] EMPTY_SUBCARDS =
+                new SmartSpaceCardMetadata[0];
+
+        public int clickedSubcardIndex;
+        public SmartSpaceCardMetadata[] subcards;
+
+        public SmartSpaceSubcards() {
+            clear();
+        }
+
+        public SmartSpaceSubcards clear() {
+            clickedSubcardIndex = 0;
+            subcards = EMPTY_SUBCARDS;
+            cachedSize = -1;
+            return this;
+        }
+
+        @Override
+        public void writeTo(CodedOutputByteBufferNano output) throws IOException {
+            output.writeInt32(1, clickedSubcardIndex);
+            if (subcards != null) {
+                for (SmartSpaceCardMetadata element : subcards) {
+                    if (element != null) {
+                        output.writeMessage(2, element);
+                    }
+                }
+            }
+            super.writeTo(output);
+        }
+
+        @Override
+        protected int computeSerializedSize() {
+            int size = super.computeSerializedSize();
+            size += CodedOutputByteBufferNano.computeInt32Size(1, clickedSubcardIndex);
+            if (subcards != null) {
+                for (SmartSpaceCardMetadata element : subcards) {
+                    if (element != null) {
+                        size += CodedOutputByteBufferNano.computeMessageSize(2, element);
+                    }
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public SmartSpaceSubcards mergeFrom(CodedInputByteBufferNano input) throws IOException {
+            while (true) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        return this;
+                    case 8:
+                        clickedSubcardIndex = input.readInt32();
+                        break;
+                    case 18: {
+                        int arrayLength = WireFormatNano.getRepeatedFieldArrayLength(input, 18);
+                        int i = subcards == null ? 0 : subcards.length;
+                        SmartSpaceCardMetadata[] newArray =
+                                new SmartSpaceCardMetadata[i + arrayLength];
+                        if (i != 0) {
+                            System.arraycopy(subcards, 0, newArray, 0, i);
+                        }
+                        for (; i < newArray.length - 1; i++) {
+                            newArray[i] = new SmartSpaceCardMetadata();
+                            input.readMessage(newArray[i]);
+                            input.readTag();
+                        }
+                        newArray[i] = new SmartSpaceCardMetadata();
+                        input.readMessage(newArray[i]);
+                        subcards = newArray;
+                        break;
+                    }
+                    default:
+                        if (!WireFormatNano.parseUnknownField(input, tag)) {
+                            return this;
+                        }
+                        break;
+                }
+            }
+        }
+
+        public static SmartSpaceSubcards parseFrom(byte[] data)
+                throws InvalidProtocolBufferNanoException {
+            return MessageNano.mergeFrom(new SmartSpaceSubcards(), data);
+        }
+    }
+}
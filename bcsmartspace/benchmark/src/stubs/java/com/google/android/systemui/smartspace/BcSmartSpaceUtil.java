@@ -0,0 +1,19 @@
+package com.google.android.systemui.smartspace;
+
+/** Holds the one helper of the real class the benchmarked sources call. */
+public final class BcSmartSpaceUtil {
+    private BcSmartSpaceUtil() {}
+
+    public static int getLoggingDisplaySurface(String str, float f) {
+        if (!str.equals("com.google.android.apps.nexuslauncher")) {
+            if (!str.equals("com.android.systemui")) {
+                return 0;
+            }
+            if (f == 1.0f) {
+                return 3;
+            }
+            return f == 0.0f ? 2 : -1;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,71 @@
+package com.google.android.systemui.smartspace;
+
+import android.app.smartspace.SmartspaceTarget;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import com.android.systemui.plugins.BcSmartspaceDataPlugin;
+
+import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggingInfo;
+
+/**
+ * Stands in for the card view, which needs real views to inflate. Binding only keeps what it is
+ * given, so the benchmarks measure the adapter and not the card layouts.
+ */
+public class BcSmartspaceCard extends View {
+    private BcSmartspaceDataPlugin.SmartspaceEventNotifier mEventNotifier;
+    private SmartspaceTarget mTarget;
+    private BcSmartspaceCardLoggingInfo mLoggingInfo;
+    private boolean mUsePageIndicatorUi;
+    private int mPrimaryTextColor;
+    private float mDozeAmount;
+    private Drawable mDndImage;
+    private String mDndDescription;
+    private Drawable mNextAlarmImage;
+    private String mNextAlarmDescription;
+    private SmartspaceTarget mHolidayAlarmsTarget;
+
+    public BcSmartspaceCard(Context context) {
+        super(context);
+    }
+
+    public void setEventNotifier(
+            BcSmartspaceDataPlugin.SmartspaceEventNotifier smartspaceEventNotifier) {
+        mEventNotifier = smartspaceEventNotifier;
+    }
+
+    public void setSmartspaceTarget(
+            SmartspaceTarget smartspaceTarget,
+            BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
+            boolean z) {
+        mTarget = smartspaceTarget;
+        mLoggingInfo = bcSmartspaceCardLoggingInfo;
+        mUsePageIndicatorUi = z;
+    }
+
+    public void setPrimaryTextColor(int i) {
+        mPrimaryTextColor = i;
+    }
+
+    public void setDozeAmount(float f) {
+        mDozeAmount = f;
+    }
+
+    public void setDnd(Drawable drawable, String str) {
+        mDndImage = drawable;
+        mDndDescription = str;
+    }
+
+    public void setNextAlarm(Drawable drawable, String str, SmartspaceTarget smartspaceTarget) {
+        mNextAlarmImage = drawable;
+        mNextAlarmDescription = str;
+        mHolidayAlarmsTarget = smartspaceTarget;
+    }
+
+    void resetForReuse() {
+        mTarget = null;
+        mLoggingInfo = null;
+        mEventNotifier = null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.google.android.systemui.smartspace;
+
+import android.content.Context;
+import android.view.View;
+
+import com.android.systemui.plugins.BcSmartspaceDataPlugin;
+
+import java.io.PrintWriter;
+
+/** Stands in for the smartspace view, which needs real views to inflate. */
+public class BcSmartspaceView extends View implements BcSmartspaceDataPlugin.SmartspaceView {
+    public BcSmartspaceView(Context context) {
+        super(context);
+    }
+
+    public void setCardInflater(CardInflater cardInflater) {}
+
+    public void dump(PrintWriter pw, String prefix) {}
+}
@@ -0,0 +1,27 @@
+package com.google.android.systemui.smartspace;
+
+import android.content.Context;
+import android.view.ViewGroup;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+/** Stands in for the card inflater, cards are created directly instead of from layouts. */
+public class CardInflater {
+    private int mInflateCount = 0;
+
+    public void preInflate(ViewGroup parent, Collection<Integer> featureTypes) {}
+
+    public BcSmartspaceCard takePreInflated(Context context, int baseLayout, int secondaryLayout) {
+        return null;
+    }
+
+    public BcSmartspaceCard inflate(ViewGroup parent, int baseLayout, int secondaryLayout) {
+        mInflateCount++;
+        return new BcSmartspaceCard(parent.getContext());
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "CardInflater: inflated=" + mInflateCount);
+    }
+}
@@ -0,0 +1,14 @@
+package com.google.android.systemui.smartspace;
+
+import java.io.PrintWriter;
+
+/** Stands in for the real class, only its dump is reached from the benchmarked sources. */
+public class DateTextService {
+    private static final DateTextService sInstance = new DateTextService();
+
+    public static DateTextService getInstance() {
+        return sInstance;
+    }
+
+    public void dump(PrintWriter pw, String prefix) {}
+}
@@ -0,0 +1,14 @@
+package com.google.android.systemui.smartspace;
+
+import java.io.PrintWriter;
+
+/** Stands in for the real class, only its dump is reached from the benchmarked sources. */
+public class DoubleShadowIconCache {
+    private static final DoubleShadowIconCache sInstance = new DoubleShadowIconCache();
+
+    public static DoubleShadowIconCache getInstance() {
+        return sInstance;
+    }
+
+    public void dump(PrintWriter pw, String prefix) {}
+}
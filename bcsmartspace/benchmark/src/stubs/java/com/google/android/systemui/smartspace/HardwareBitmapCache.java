@@ -0,0 +1,27 @@
+package com.google.android.systemui.smartspace;
+
+import android.app.smartspace.SmartspaceTarget;
+import android.content.Context;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Stands in for the real class, which needs graphics memory. Behaves like the real cache with
+ * {@code R.bool.smartspace_hardware_bitmaps} unset, targets are published right away.
+ */
+public final class HardwareBitmapCache {
+    private static final HardwareBitmapCache sInstance = new HardwareBitmapCache();
+
+    private HardwareBitmapCache() {}
+
+    public static HardwareBitmapCache getInstance(Context context) {
+        return sInstance;
+    }
+
+    public void convertTargets(List<SmartspaceTarget> targets, Runnable onConverted) {
+        onConverted.run();
+    }
+
+    public static void dump(PrintWriter pw, String prefix) {}
+}
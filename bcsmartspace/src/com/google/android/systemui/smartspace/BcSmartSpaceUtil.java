@@ -24,6 +24,7 @@ import com.android.systemui.plugins.FalsingManager;
 
 import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLogger;
 import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggingInfo;
+import com.google.android.systemui.smartspace.logging.BcSmartspaceSubcardLoggingInfo;
 
 public final class BcSmartSpaceUtil {
     private static FalsingManager sFalsingManager;
@@ -67,6 +68,51 @@ public final class BcSmartSpaceUtil {
     }
 
     public static void setOnClickListener(
+            View view,
+            SmartspaceTarget smartspaceTarget,
+            SmartspaceAction smartspaceAction,
+            View.OnClickListener onClickListener,
+            String str,
+            BcSmartspaceDataPlugin.SmartspaceEventNotifier smartspaceEventNotifier,
+            BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
+            int i) {
+        setOnClickListener(
+                view,
+                smartspaceTarget,
+                smartspaceAction,
+                onClickListener,
+                str,
+                smartspaceEventNotifier,
+                bcSmartspaceCardLoggingInfo,
+                i,
+                -1);
+    }
+
+    /**
+     * Logs clicks as clicks on the subcard of the given card type. The subcard is only looked up
+     * when the view is clicked, so binding does not have to resolve the logging info.
+     */
+    public static void setOnSubcardClickListener(
+            View view,
+            SmartspaceTarget smartspaceTarget,
+            SmartspaceAction smartspaceAction,
+            String str,
+            BcSmartspaceDataPlugin.SmartspaceEventNotifier smartspaceEventNotifier,
+            BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
+            int subcardCardTypeId) {
+        setOnClickListener(
+                view,
+                smartspaceTarget,
+                smartspaceAction,
+                null,
+                str,
+                smartspaceEventNotifier,
+                bcSmartspaceCardLoggingInfo,
+                0,
+                subcardCardTypeId);
+    }
+
+    private static void setOnClickListener(
             View view,
             final SmartspaceTarget smartspaceTarget,
             final SmartspaceAction smartspaceAction,
@@ -74,7 +120,8 @@ public final class BcSmartSpaceUtil {
             final String str,
             final BcSmartspaceDataPlugin.SmartspaceEventNotifier smartspaceEventNotifier,
             final BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
-            final int i) {
+            final int i,
+            final int subcardCardTypeId) {
         if (view == null || smartspaceAction == null) {
             Log.e(str, "No tap action can be set up");
             return;
@@ -94,10 +141,13 @@ public final class BcSmartSpaceUtil {
                     @Override
                     public final void onClick(View view2) {
                         if (bcSmartspaceCardLoggingInfo != null) {
-                            if (bcSmartspaceCardLoggingInfo.getSubcardInfo() != null) {
-                                bcSmartspaceCardLoggingInfo
-                                        .getSubcardInfo()
-                                        .setClickedSubcardIndex(i);
+                            BcSmartspaceSubcardLoggingInfo subcardInfo =
+                                    bcSmartspaceCardLoggingInfo.getSubcardInfo();
+                            if (subcardInfo != null) {
+                                subcardInfo.setClickedSubcardIndex(
+                                        subcardCardTypeId == -1
+                                                ? i
+                                                : subcardInfo.getSubcardIndex(subcardCardTypeId));
                             }
                             BcSmartspaceCardLogger.log(
                                     BcSmartspaceEvent.SMARTSPACE_CARD_CLICK,
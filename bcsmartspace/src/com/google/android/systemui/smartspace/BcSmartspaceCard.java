@@ -23,11 +23,8 @@ import com.android.systemui.bcsmartspace.R;
 import com.android.systemui.plugins.BcSmartspaceDataPlugin;
 
 import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggingInfo;
-import com.google.android.systemui.smartspace.logging.BcSmartspaceCardMetadataLoggingInfo;
 
-import java.util.List;
 import java.util.Locale;
-import java.util.UUID;
 
 public class BcSmartspaceCard extends LinearLayout {
     private static final SmartspaceAction SHOW_ALARMS_ACTION =
@@ -98,7 +95,6 @@ public class BcSmartspaceCard extends LinearLayout {
             BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
             boolean z) {
         String str;
-        int i;
         mTarget = smartspaceTarget;
         SmartspaceAction headerAction = smartspaceTarget.getHeaderAction();
         SmartspaceAction baseAction = smartspaceTarget.getBaseAction();
@@ -115,12 +111,9 @@ public class BcSmartspaceCard extends LinearLayout {
                                 ? View.VISIBLE
                                 : View.GONE);
             }
-            Drawable iconDrawable =
-                    BcSmartSpaceUtil.getIconDrawable(headerAction.getIcon(), getContext());
+            cancelIconDrawable(mIconDrawable);
             mIconDrawable =
-                    iconDrawable == null
-                            ? null
-                            : new DoubleShadowIconDrawable(iconDrawable, getContext());
+                    DoubleShadowIconDrawable.fromIcon(headerAction.getIcon(), getContext());
             CharSequence title = headerAction.getTitle();
             CharSequence subtitle = headerAction.getSubtitle();
             boolean z2 = smartspaceTarget.getFeatureType() == 1 || !TextUtils.isEmpty(title);
@@ -152,25 +145,22 @@ public class BcSmartspaceCard extends LinearLayout {
                         iconDrawable2, null, null, null);
                 mBaseActionIconSubtitleView.setVisibility(View.VISIBLE);
                 int subcardType = getSubcardType(baseAction);
-                if (subcardType != -1) {
-                    i = getClickedIndex(bcSmartspaceCardLoggingInfo, subcardType);
-                } else {
+                if (subcardType == -1) {
                     Log.d(
                             "BcSmartspaceCard",
                             String.format(
                                     "Subcard expected but missing type. loggingInfo=%s,"
                                             + " baseAction=%s",
                                     bcSmartspaceCardLoggingInfo.toString(), baseAction.toString()));
-                    i = 0;
                 }
-                BcSmartSpaceUtil.setOnClickListener(
+                BcSmartSpaceUtil.setOnSubcardClickListener(
                         mBaseActionIconSubtitleView,
                         smartspaceTarget,
                         baseAction,
                         "BcSmartspaceCard",
                         mEventNotifier,
                         bcSmartspaceCardLoggingInfo,
-                        i);
+                        subcardType);
                 setFormattedContentDescription(
                         mBaseActionIconSubtitleView,
                         baseAction.getSubtitle(),
@@ -183,7 +173,8 @@ public class BcSmartspaceCard extends LinearLayout {
             } else if (baseAction != null) {
                 str = baseAction.getId();
             } else {
-                str = UUID.randomUUID().toString();
+                // Stable across binds, unlike a random id.
+                str = smartspaceTarget.getSmartspaceTargetId();
             }
             BcSmartSpaceUtil.setOnClickListener(
                     mDateView,
@@ -196,17 +187,25 @@ public class BcSmartspaceCard extends LinearLayout {
                     bcSmartspaceCardLoggingInfo);
         }
         if (hasIntent(headerAction)) {
-            BcSmartSpaceUtil.setOnClickListener(
-                    this,
-                    smartspaceTarget,
-                    headerAction,
-                    "BcSmartspaceCard",
-                    mEventNotifier,
-                    bcSmartspaceCardLoggingInfo,
-                    (smartspaceTarget.getFeatureType() == 1
-                                    && bcSmartspaceCardLoggingInfo.getFeatureType() == 39)
-                            ? getClickedIndex(bcSmartspaceCardLoggingInfo, 1)
-                            : 0);
+            if (smartspaceTarget.getFeatureType() == 1
+                    && bcSmartspaceCardLoggingInfo.getFeatureType() == 39) {
+                BcSmartSpaceUtil.setOnSubcardClickListener(
+                        this,
+                        smartspaceTarget,
+                        headerAction,
+                        "BcSmartspaceCard",
+                        mEventNotifier,
+                        bcSmartspaceCardLoggingInfo,
+                        1);
+            } else {
+                BcSmartSpaceUtil.setOnClickListener(
+                        this,
+                        smartspaceTarget,
+                        headerAction,
+                        "BcSmartspaceCard",
+                        mEventNotifier,
+                        bcSmartspaceCardLoggingInfo);
+            }
         } else if (hasIntent(baseAction)) {
             BcSmartSpaceUtil.setOnClickListener(
                     this,
@@ -226,25 +225,6 @@ public class BcSmartspaceCard extends LinearLayout {
         }
     }
 
-    private int getClickedIndex(BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo, int i) {
-        if (bcSmartspaceCardLoggingInfo == null
-                || bcSmartspaceCardLoggingInfo.getSubcardInfo() == null
-                || bcSmartspaceCardLoggingInfo.getSubcardInfo().getSubcards() == null) {
-            return 0;
-        }
-        List<BcSmartspaceCardMetadataLoggingInfo> subcards =
-                bcSmartspaceCardLoggingInfo.getSubcardInfo().getSubcards();
-        for (int i2 = 0; i2 < subcards.size(); i2++) {
-            BcSmartspaceCardMetadataLoggingInfo bcSmartspaceCardMetadataLoggingInfo =
-                    subcards.get(i2);
-            if (bcSmartspaceCardMetadataLoggingInfo != null
-                    && bcSmartspaceCardMetadataLoggingInfo.getCardTypeId() == i) {
-                return i2 + 1;
-            }
-        }
-        return 0;
-    }
-
     private int getSubcardType(SmartspaceAction smartspaceAction) {
         if (smartspaceAction == null
                 || smartspaceAction.getExtras() == null
@@ -283,6 +263,7 @@ public class BcSmartspaceCard extends LinearLayout {
         BcSmartspaceCardSecondary bcSmartspaceCardSecondary = mSecondaryCard;
         if (bcSmartspaceCardSecondary != null) {
             bcSmartspaceCardSecondary.setAlpha(1.0f - f);
+            bcSmartspaceCardSecondary.setDozeAmount(f);
         }
         if (getTarget() != null
                 && getTarget().getBaseAction() != null
@@ -428,8 +409,9 @@ public class BcSmartspaceCard extends LinearLayout {
         if (drawable == null) {
             imageView.setVisibility(View.GONE);
         } else {
+            cancelIconDrawable(imageView.getDrawable());
             imageView.setImageDrawable(
-                    new DoubleShadowIconDrawable(drawable.mutate(), getContext()));
+                    DoubleShadowIconDrawable.fromDrawable(drawable.mutate(), getContext()));
             mDndImageView.setContentDescription(str);
             mDndImageView.setVisibility(View.VISIBLE);
         }
@@ -447,8 +429,9 @@ public class BcSmartspaceCard extends LinearLayout {
         } else {
             String maybeAppendHolidayInfoToNextAlarm =
                     maybeAppendHolidayInfoToNextAlarm(str, smartspaceTarget);
+            cancelIconDrawable(mNextAlarmImageView.getDrawable());
             mNextAlarmImageView.setImageDrawable(
-                    new DoubleShadowIconDrawable(drawable.mutate(), getContext()));
+                    DoubleShadowIconDrawable.fromDrawable(drawable.mutate(), getContext()));
             mNextAlarmImageView.setVisibility(View.VISIBLE);
             mNextAlarmTextView.setContentDescription(
                     getContext()
@@ -539,6 +522,44 @@ public class BcSmartspaceCard extends LinearLayout {
         return mTarget;
     }
 
+    private static void cancelIconDrawable(Drawable drawable) {
+        if (drawable instanceof DoubleShadowIconDrawable) {
+            ((DoubleShadowIconDrawable) drawable).cancel();
+        }
+    }
+
+    /** Clears per-target state so a detached card can be bound to a different target. */
+    void resetForReuse() {
+        mTarget = null;
+        mLoggingInfo = null;
+        mEventNotifier = null;
+        cancelIconDrawable(mIconDrawable);
+        mIconDrawable = null;
+        setOnClickListener(null);
+        setAlpha(1.0f);
+        setTranslationX(0.0f);
+        setTranslationY(0.0f);
+        if (mTitleTextView != null) {
+            mTitleTextView.setText(null);
+            mTitleTextView.setAlpha(1.0f);
+            mTitleTextView.setCompoundDrawablesRelative(null, null, null, null);
+        }
+        if (mSubtitleTextView != null) {
+            mSubtitleTextView.setText(null);
+            mSubtitleTextView.setAlpha(1.0f);
+            mSubtitleTextView.setCompoundDrawablesRelative(null, null, null, null);
+        }
+        if (mBaseActionIconSubtitleView != null) {
+            mBaseActionIconSubtitleView.setText(null);
+            mBaseActionIconSubtitleView.setCompoundDrawablesRelative(null, null, null, null);
+            mBaseActionIconSubtitleView.setOnClickListener(null);
+            mBaseActionIconSubtitleView.setContentDescription(null);
+        }
+        if (mSecondaryCard != null) {
+            mSecondaryCard.setVisibility(View.VISIBLE);
+        }
+    }
+
     private void setFormattedContentDescription(
             TextView textView, CharSequence charSequence, CharSequence charSequence2) {
         if (TextUtils.isEmpty(charSequence)) {
@@ -7,12 +7,12 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.ImageDecoder;
-import android.graphics.drawable.AnimationDrawable;
-import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.Size;
@@ -34,18 +34,40 @@ import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggingInf
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class BcSmartspaceCardDoorbell extends BcSmartspaceCardGenericImage {
     private ImageView mLoadingIcon;
     private CardView mLoadingScreenView;
     private ProgressBar mProgressBar;
-    private final Map<Uri, DrawableWithUri> mUriToDrawable = new HashMap();
     private int mGifFrameDurationInMs = 200;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Future<?>> mPendingDecodes = new ArrayList<>();
+    private List<Uri> mLoadedUris = null;
+    private int mDecodeGeneration = 0;
+    private StreamingFrameDrawable mFrameDrawable = null;
+    private boolean mDozing = false;
+
+    private static final ThreadPoolExecutor sDecodeExecutor = createDecodeExecutor();
+
+    private static ThreadPoolExecutor createDecodeExecutor() {
+        ThreadPoolExecutor threadPoolExecutor =
+                new ThreadPoolExecutor(
+                        2,
+                        2,
+                        10,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        runnable -> new Thread(runnable, "DoorbellDecode"));
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
 
     public BcSmartspaceCardDoorbell(Context context) {
         super(context);
@@ -67,14 +89,22 @@ public class BcSmartspaceCardDoorbell extends BcSmartspaceCardGenericImage {
         Bundle extras = baseAction == null ? null : baseAction.getExtras();
         List<Uri> imageUris = getImageUris(smartspaceTarget);
         if (!imageUris.isEmpty()) {
-            if (extras != null && extras.containsKey("frameDurationMs")) {
-                mGifFrameDurationInMs = extras.getInt("frameDurationMs");
+            int frameDurationMs =
+                    extras != null && extras.containsKey("frameDurationMs")
+                            ? extras.getInt("frameDurationMs")
+                            : mGifFrameDurationInMs;
+            // Rebinding the same sequence, e.g. on a doze or alarm change, keeps the frames that
+            // are already loaded or loading.
+            if (!imageUris.equals(mLoadedUris) || frameDurationMs != mGifFrameDurationInMs) {
+                mGifFrameDurationInMs = frameDurationMs;
+                loadImageUris(imageUris);
             }
-            loadImageUris(imageUris);
             hideLoadingState(extras);
             Log.d("BcSmartspaceCardBell", "imageUri is set");
             return true;
-        } else if (extras != null && extras.containsKey("imageBitmap")) {
+        }
+        cancelPendingDecodes();
+        if (extras != null && extras.containsKey("imageBitmap")) {
             setRoundedBitmapDrawable((Bitmap) extras.get("imageBitmap"));
             hideLoadingState(extras);
             Log.d("BcSmartspaceCardBell", "imageBitmap is set");
@@ -130,16 +160,47 @@ public class BcSmartspaceCardDoorbell extends BcSmartspaceCardGenericImage {
         imageView.setVisibility(i2);
     }
 
-    private void setRoundedBitmapDrawable(Bitmap bitmap) {
-        if (bitmap.getHeight() != 0) {
-            int dimension = (int) getResources().getDimension(R.dimen.enhanced_smartspace_height);
-            bitmap =
-                    Bitmap.createScaledBitmap(
-                            bitmap,
-                            (int) (dimension * (bitmap.getWidth() / bitmap.getHeight())),
-                            dimension,
-                            true);
+    private void cancelPendingDecodes() {
+        mDecodeGeneration++;
+        mLoadedUris = null;
+        if (mFrameDrawable != null) {
+            mFrameDrawable.release();
+            mFrameDrawable = null;
+        }
+        for (Future<?> future : mPendingDecodes) {
+            future.cancel(true);
         }
+        mPendingDecodes.clear();
+    }
+
+    private void setRoundedBitmapDrawable(final Bitmap bitmap) {
+        final int dimension = (int) getResources().getDimension(R.dimen.enhanced_smartspace_height);
+        // Hardware bitmaps converted when the target arrived are scaled when drawn, a scaled
+        // copy would only add to the memory they take.
+        if (bitmap.getHeight() == 0
+                || bitmap.getHeight() == dimension
+                || bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            showRoundedBitmap(bitmap);
+            return;
+        }
+        final int generation = mDecodeGeneration;
+        final int width = (int) (dimension * (bitmap.getWidth() / (float) bitmap.getHeight()));
+        // Scaling a full size snapshot takes a while, so do it off the main thread.
+        mPendingDecodes.add(
+                sDecodeExecutor.submit(
+                        () -> {
+                            final Bitmap scaled =
+                                    Bitmap.createScaledBitmap(bitmap, width, dimension, true);
+                            mMainHandler.post(
+                                    () -> {
+                                        if (generation == mDecodeGeneration) {
+                                            showRoundedBitmap(scaled);
+                                        }
+                                    });
+                        }));
+    }
+
+    private void showRoundedBitmap(Bitmap bitmap) {
         RoundedBitmapDrawable create = RoundedBitmapDrawableFactory.create(getResources(), bitmap);
         create.setCornerRadius(
                 getResources()
@@ -148,41 +209,64 @@ public class BcSmartspaceCardDoorbell extends BcSmartspaceCardGenericImage {
     }
 
     private void loadImageUris(List<Uri> list) {
-        final ContentResolver contentResolver =
-                getContext().getApplicationContext().getContentResolver();
-        final int dimensionPixelOffset =
-                getResources().getDimensionPixelOffset(R.dimen.enhanced_smartspace_height);
-        final float dimension =
-                getResources()
-                        .getDimension(R.dimen.enhanced_smartspace_secondary_card_corner_radius);
-        addFramesToAnimatedDrawable(
-                (List)
-                        list.stream()
-                                .map(
-                                        new Function() {
-                                            @Override
-                                            public final Object apply(Object obj) {
-                                                DrawableWithUri drawableWithUri =
-                                                        new DrawableWithUri(
-                                                                (Uri) obj,
-                                                                contentResolver,
-                                                                dimensionPixelOffset,
-                                                                dimension);
-                                                new LoadUriTask().execute(drawableWithUri);
-                                                return drawableWithUri;
-                                            }
-                                        })
-                                .filter(drawableWithUri -> drawableWithUri != null)
-                                .collect(Collectors.toList()));
+        cancelPendingDecodes();
+        mLoadedUris = list;
+        mFrameDrawable =
+                new StreamingFrameDrawable(
+                        list,
+                        getContext().getApplicationContext().getContentResolver(),
+                        getResources(),
+                        getResources().getDimensionPixelOffset(R.dimen.enhanced_smartspace_height),
+                        mGifFrameDurationInMs,
+                        sDecodeExecutor,
+                        DoorbellFrameCache.getInstance(getContext()));
+        mFrameDrawable.setDozing(mDozing);
+        final RoundDrawableWrapper roundDrawableWrapper =
+                new RoundDrawableWrapper(
+                        mFrameDrawable,
+                        getResources()
+                                .getDimension(
+                                        R.dimen.enhanced_smartspace_secondary_card_corner_radius));
+        // ImageView only configures the drawable bounds for its scale type when the drawable is
+        // set, so set it again once the frame size is known.
+        mFrameDrawable.setOnIntrinsicSizeChangedListener(
+                () -> {
+                    mImageView.setImageDrawable(null);
+                    mImageView.setImageDrawable(roundDrawableWrapper);
+                });
+        mImageView.setImageDrawable(roundDrawableWrapper);
+        mFrameDrawable.start();
     }
 
-    private void addFramesToAnimatedDrawable(List<Drawable> list) {
-        AnimationDrawable animationDrawable = new AnimationDrawable();
-        for (Drawable drawable : list) {
-            animationDrawable.addFrame(drawable, mGifFrameDurationInMs);
+    static Drawable decodeFrame(
+            ContentResolver contentResolver,
+            Uri uri,
+            int heightInPx,
+            DoorbellFrameCache frameCache) {
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        try {
+            Drawable drawable =
+                    decodeSampledDrawable(
+                            ImageDecoder.createSource(contentResolver, uri), heightInPx);
+            // Animated images keep decoding as they play, so only still frames are cached.
+            if (drawable instanceof BitmapDrawable) {
+                frameCache.put(uri, heightInPx, ((BitmapDrawable) drawable).getBitmap());
+            }
+            return drawable;
+        } catch (Exception e) {
+            Log.w("BcSmartspaceCardBell", "open uri:" + uri + " got exception:" + e);
+            return null;
+        }
+    }
+
+    @Override
+    public void setDozeAmount(float f) {
+        mDozing = f == 1.0f;
+        if (mFrameDrawable != null) {
+            mFrameDrawable.setDozing(mDozing);
         }
-        mImageView.setImageDrawable(animationDrawable);
-        animationDrawable.start();
     }
 
     private List<Uri> getImageUris(SmartspaceTarget smartspaceTarget) {
@@ -200,20 +284,6 @@ public class BcSmartspaceCardDoorbell extends BcSmartspaceCardGenericImage {
         return getContext().getPackageName().equals("com.android.systemui");
     }
 
-    public static class DrawableWithUri extends RoundDrawableWrapper {
-        ContentResolver mContentResolver;
-        Drawable mDrawable;
-        int mHeightInPx;
-        Uri mUri;
-
-        DrawableWithUri(Uri uri, ContentResolver contentResolver, int i, float f) {
-            super(new ColorDrawable(0), f);
-            mUri = uri;
-            mHeightInPx = i;
-            mContentResolver = contentResolver;
-        }
-    }
-
     @Override
     public void onFinishInflate() {
         super.onFinishInflate();
@@ -222,62 +292,39 @@ public class BcSmartspaceCardDoorbell extends BcSmartspaceCardGenericImage {
         mLoadingIcon = (ImageView) findViewById(R.id.loading_screen_icon);
     }
 
-    public static Drawable getSampleBitmapDrawable(InputStream inputStream, final int i) {
+    public static Drawable getSampleBitmapDrawable(InputStream inputStream, int i) {
         try {
-            return ImageDecoder.decodeDrawable(
-                    ImageDecoder.createSource((Resources) null, inputStream),
-                    new ImageDecoder.OnHeaderDecodedListener() {
-                        @Override
-                        public final void onHeaderDecoded(
-                                ImageDecoder imageDecoder,
-                                ImageDecoder.ImageInfo imageInfo,
-                                ImageDecoder.Source source) {
-                            imageDecoder.setAllocator(3);
-                            imageDecoder.setTargetSize((int) (i * getTargetRatio(imageInfo)), i);
-                        }
-                    });
+            return decodeSampledDrawable(
+                    ImageDecoder.createSource((Resources) null, inputStream), i);
         } catch (IOException e) {
             Log.e("BcSmartspaceCardBell", "Unable to decode stream: " + e);
             return null;
         }
     }
 
+    /** Decodes the source downsampled to the given height, keeping its aspect ratio. */
+    private static Drawable decodeSampledDrawable(ImageDecoder.Source source, final int i)
+            throws IOException {
+        return ImageDecoder.decodeDrawable(
+                source,
+                new ImageDecoder.OnHeaderDecodedListener() {
+                    @Override
+                    public final void onHeaderDecoded(
+                            ImageDecoder imageDecoder,
+                            ImageDecoder.ImageInfo imageInfo,
+                            ImageDecoder.Source source2) {
+                        imageDecoder.setAllocator(3);
+                        imageDecoder.setTargetSize(
+                                Math.max(1, (int) (i * getTargetRatio(imageInfo))), i);
+                    }
+                });
+    }
+
     private static float getTargetRatio(ImageDecoder.ImageInfo imageInfo) {
         Size size = imageInfo.getSize();
         if (size.getHeight() != 0) {
-            return size.getWidth() / size.getHeight();
+            return size.getWidth() / (float) size.getHeight();
         }
         return 0.0f;
     }
-
-    public static class LoadUriTask extends AsyncTask<DrawableWithUri, Void, DrawableWithUri> {
-        private LoadUriTask() {}
-
-        public DrawableWithUri doInBackground(DrawableWithUri... drawableWithUriArr) {
-            if (drawableWithUriArr.length > 0) {
-                DrawableWithUri drawableWithUri = drawableWithUriArr[0];
-                try {
-                    drawableWithUri.mDrawable =
-                            BcSmartspaceCardDoorbell.getSampleBitmapDrawable(
-                                    drawableWithUri.mContentResolver.openInputStream(
-                                            drawableWithUri.mUri),
-                                    drawableWithUri.mHeightInPx);
-                } catch (Exception e) {
-                    Log.w(
-                            "BcSmartspaceCardBell",
-                            "open uri:" + drawableWithUri.mUri + " got exception:" + e);
-                }
-                return drawableWithUri;
-            }
-            return null;
-        }
-
-        public void onPostExecute(DrawableWithUri drawableWithUri) {
-            Drawable drawable;
-            if (drawableWithUri == null || (drawable = drawableWithUri.mDrawable) == null) {
-                return;
-            }
-            drawableWithUri.setDrawable(drawable);
-        }
-    }
 }
@@ -23,4 +23,7 @@ public abstract class BcSmartspaceCardSecondary extends ConstraintLayout {
     public BcSmartspaceCardSecondary(Context context, AttributeSet attributeSet) {
         super(context, attributeSet);
     }
+
+    /** Called when the doze amount of the card changes, 1 meaning fully dozing. */
+    public void setDozeAmount(float f) {}
 }
@@ -2,6 +2,11 @@ package com.google.android.systemui.smartspace;
 
 import android.app.smartspace.SmartspaceTarget;
 import android.app.smartspace.SmartspaceTargetEvent;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.ArraySet;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,19 +14,44 @@ import android.view.ViewGroup;
 import com.android.systemui.bcsmartspace.R;
 import com.android.systemui.plugins.BcSmartspaceDataPlugin;
 
+import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLogger;
+
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.function.Consumer;
 
 public class BcSmartspaceDataProvider implements BcSmartspaceDataPlugin {
     private final Set<BcSmartspaceDataPlugin.SmartspaceTargetListener> mSmartspaceTargetListeners =
             new HashSet();
-    private final List<SmartspaceTarget> mSmartspaceTargets = new ArrayList();
-    private Set<View> mViews = new HashSet();
+    // Replaced, never mutated, on every update so listeners can hold on to it.
+    private volatile SmartspaceTargetSnapshot mSmartspaceTargets = SmartspaceTargetSnapshot.EMPTY;
+    // Read by dump() off the main thread.
+    private final Set<View> mViews = new CopyOnWriteArraySet<>();
     private Set<View.OnAttachStateChangeListener> mAttachListeners = new HashSet();
     private BcSmartspaceDataPlugin.SmartspaceEventNotifier mEventNotifier = null;
+    private final CardInflater mCardInflater = new CardInflater();
+    private boolean mPreInflated = false;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HardwareBitmapCache mHardwareBitmapCache;
+    // 0 dispatches on the next frame.
+    private final long mUpdateWindowMs;
+    private final Object mPendingLock = new Object();
+    // Filtered copy of the latest update, the caller's list is never kept.
+    private List<SmartspaceTarget> mPendingTargets = null;
+    private int mReceivedUpdates = 0;
+    private int mCoalescedUpdates = 0;
+    private int mSkippedUpdates = 0;
+    private int mDispatchedUpdates = 0;
+    private final Choreographer.FrameCallback mFrameCallback =
+            frameTimeNanos -> dispatchPendingTargets();
+    private final Runnable mScheduleFrameRunnable =
+            () -> Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    private final Runnable mDispatchRunnable = this::dispatchPendingTargets;
     private View.OnAttachStateChangeListener mStateChangeListener =
             new View.OnAttachStateChangeListener() {
                 @Override
@@ -44,6 +74,14 @@ public class BcSmartspaceDataProvider implements BcSmartspaceDataPlugin {
                 }
             };
 
+    public BcSmartspaceDataProvider(Context context) {
+        mHardwareBitmapCache = HardwareBitmapCache.getInstance(context);
+        mUpdateWindowMs =
+                Math.max(
+                        0,
+                        context.getResources().getInteger(R.integer.smartspace_update_window_ms));
+    }
+
     @Override
     public void registerListener(
             BcSmartspaceDataPlugin.SmartspaceTargetListener smartspaceTargetListener) {
@@ -77,6 +115,17 @@ public class BcSmartspaceDataProvider implements BcSmartspaceDataPlugin {
                 LayoutInflater.from(viewGroup.getContext())
                         .inflate(R.layout.smartspace_enhanced, viewGroup, false);
         inflate.addOnAttachStateChangeListener(mStateChangeListener);
+        if (inflate instanceof BcSmartspaceView) {
+            ((BcSmartspaceView) inflate).setCardInflater(mCardInflater);
+        }
+        if (!mPreInflated) {
+            mPreInflated = true;
+            Set<Integer> featureTypes = new ArraySet<>();
+            for (SmartspaceTarget smartspaceTarget : mSmartspaceTargets) {
+                featureTypes.add(CardPagerAdapter.getFeatureType(smartspaceTarget));
+            }
+            mCardInflater.preInflate(viewGroup, featureTypes);
+        }
         return (BcSmartspaceDataPlugin.SmartspaceView) inflate;
     }
 
@@ -89,21 +138,123 @@ public class BcSmartspaceDataProvider implements BcSmartspaceDataPlugin {
         }
     }
 
+    public void dump(PrintWriter pw, String[] args) {
+        pw.println("BcSmartspaceDataProvider:");
+        pw.println("  listeners=" + mSmartspaceTargetListeners.size());
+        SmartspaceTargetSnapshot snapshot = mSmartspaceTargets;
+        pw.println(
+                "  targets=" + snapshot.size() + " generation=" + snapshot.getGeneration());
+        synchronized (mPendingLock) {
+            pw.println(
+                    "  updates: received="
+                            + mReceivedUpdates
+                            + " coalesced="
+                            + mCoalescedUpdates
+                            + " skipped="
+                            + mSkippedUpdates
+                            + " dispatched="
+                            + mDispatchedUpdates
+                            + " windowMs="
+                            + mUpdateWindowMs);
+        }
+        mCardInflater.dump(pw, "  ");
+        DoubleShadowIconCache.getInstance().dump(pw, "  ");
+        DateTextService.getInstance().dump(pw, "  ");
+        DoorbellFrameCache.dump(pw, "  ");
+        HardwareBitmapCache.dump(pw, "  ");
+        BcSmartspaceCardLogger.dump(pw, "  ");
+        ProtoStore.dump(pw, "  ");
+        InstanceId.dump(pw, "  ");
+        for (View view : mViews) {
+            if (view instanceof BcSmartspaceView) {
+                ((BcSmartspaceView) view).dump(pw, "  ");
+            }
+        }
+    }
+
     @Override
     public void onTargetsAvailable(List<SmartspaceTarget> list) {
-        mSmartspaceTargets.clear();
+        final List<SmartspaceTarget> targets = new ArrayList<>(list.size());
         for (SmartspaceTarget smartspaceTarget : list) {
             if (smartspaceTarget.getFeatureType() != 15) {
-                mSmartspaceTargets.add(smartspaceTarget);
+                targets.add(smartspaceTarget);
             }
         }
+        synchronized (mPendingLock) {
+            mReceivedUpdates++;
+        }
+        // Bitmaps are converted before the targets are published so cards only ever bind the
+        // converted copies.
+        mHardwareBitmapCache.convertTargets(targets, () -> setPendingTargets(targets));
+    }
+
+    private void setPendingTargets(List<SmartspaceTarget> targets) {
+        synchronized (mPendingLock) {
+            boolean scheduled = mPendingTargets != null;
+            mPendingTargets = targets;
+            if (scheduled) {
+                mCoalescedUpdates++;
+                return;
+            }
+        }
+        if (mUpdateWindowMs > 0) {
+            mMainHandler.postDelayed(mDispatchRunnable, mUpdateWindowMs);
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            mScheduleFrameRunnable.run();
+        } else {
+            mMainHandler.post(mScheduleFrameRunnable);
+        }
+    }
+
+    private void dispatchPendingTargets() {
+        List<SmartspaceTarget> list;
+        synchronized (mPendingLock) {
+            list = mPendingTargets;
+            mPendingTargets = null;
+        }
+        if (list == null) {
+            return;
+        }
+        if (isSameTargets(mSmartspaceTargets, list)) {
+            synchronized (mPendingLock) {
+                mSkippedUpdates++;
+            }
+            return;
+        }
+        final SmartspaceTargetSnapshot snapshot =
+                SmartspaceTargetSnapshot.of(list, mSmartspaceTargets.getGeneration() + 1);
+        mSmartspaceTargets = snapshot;
+        synchronized (mPendingLock) {
+            mDispatchedUpdates++;
+        }
         mSmartspaceTargetListeners.forEach(
                 new Consumer() {
                     @Override
                     public final void accept(Object obj) {
                         ((BcSmartspaceDataPlugin.SmartspaceTargetListener) obj)
-                                .onSmartspaceTargetsUpdated(mSmartspaceTargets);
+                                .onSmartspaceTargetsUpdated(snapshot);
                     }
                 });
     }
+
+    private static boolean isSameTargets(
+            List<SmartspaceTarget> oldTargets, List<SmartspaceTarget> newTargets) {
+        if (oldTargets.size() != newTargets.size()) {
+            return false;
+        }
+        for (int i = 0; i < oldTargets.size(); i++) {
+            SmartspaceTarget oldTarget = oldTargets.get(i);
+            SmartspaceTarget newTarget = newTargets.get(i);
+            if (oldTarget == newTarget) {
+                continue;
+            }
+            if (!Objects.equals(
+                            oldTarget.getSmartspaceTargetId(), newTarget.getSmartspaceTargetId())
+                    || oldTarget.hashCode() != newTarget.hashCode()
+                    || !oldTarget.equals(newTarget)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -32,6 +32,7 @@ import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLogger;
 import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggerUtil;
 import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggingInfo;
 
+import java.io.PrintWriter;
 import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -48,6 +49,7 @@ public class BcSmartspaceView extends FrameLayout
     private BcSmartspaceDataPlugin mDataProvider;
     private PageIndicator mPageIndicator;
     private List<? extends Parcelable> mPendingTargets;
+    private long mAppliedTargetsGeneration = SmartspaceTargetSnapshot.NO_GENERATION;
     private Animator mRunningAnimation;
     private ViewPager mViewPager;
     private boolean mIsAodEnabled = false;
@@ -249,6 +251,10 @@ public class BcSmartspaceView extends FrameLayout
         mAdapter.setDataProvider(mDataProvider);
     }
 
+    public void setCardInflater(CardInflater cardInflater) {
+        mAdapter.setCardInflater(cardInflater);
+    }
+
     @Override
     public void onSmartspaceTargetsUpdated(List<? extends Parcelable> list) {
         int i;
@@ -257,6 +263,12 @@ public class BcSmartspaceView extends FrameLayout
             mPendingTargets = list;
             return;
         }
+        long generation = SmartspaceTargetSnapshot.generationOf(list);
+        if (generation != SmartspaceTargetSnapshot.NO_GENERATION
+                && generation == mAppliedTargetsGeneration) {
+            return;
+        }
+        mAppliedTargetsGeneration = generation;
         if (getLayoutDirection() != 1) {
             z = false;
         }
@@ -302,7 +314,6 @@ public class BcSmartspaceView extends FrameLayout
                         mAdapter.getTargets().stream()
                                 .map(smartspaceTarget -> smartspaceTarget.getSmartspaceTargetId())
                                 .collect(Collectors.toList()));
-        mAdapter.notifyDataSetChanged();
     }
 
     @Override
@@ -468,6 +479,11 @@ public class BcSmartspaceView extends FrameLayout
         mViewPager.setOnLongClickListener(onLongClickListener);
     }
 
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "BcSmartspaceView: selectedPage=" + getSelectedPage());
+        mAdapter.dump(pw, prefix + "  ");
+    }
+
     public void onSettingsChanged() {
         mIsAodEnabled = isAodEnabled(getContext());
     }
@@ -0,0 +1,207 @@
+package com.google.android.systemui.smartspace;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+/**
+ * Inflates smartspace cards and keeps track of how long each layout takes to inflate. Cards for
+ * the most likely feature types can be inflated ahead of time on a background looper, in the
+ * same way AsyncLayoutInflater does, and are then handed to the adapter on the main thread.
+ */
+public class CardInflater {
+    private static final String TAG = "CardInflater";
+
+    /** Feature types that are worth inflating ahead of time even if no target is known yet. */
+    private static final int[] DEFAULT_PRE_INFLATE_FEATURE_TYPES = {1, 10};
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LongSparseArray<BcSmartspaceCard> mPreInflated = new LongSparseArray<>();
+    private final LongSparseArray<Boolean> mPending = new LongSparseArray<>();
+    private final SparseArray<LatencyStats> mLatencies = new SparseArray<>();
+    private HandlerThread mInflateThread;
+    private Handler mInflateHandler;
+    private int mPreInflatedHits = 0;
+
+    private static long key(int baseLayout, int secondaryLayout) {
+        return (((long) baseLayout) << 32) | (secondaryLayout & 0xffffffffL);
+    }
+
+    /**
+     * Starts inflating one card for each of the given feature types, plus the default ones, on a
+     * background looper. Must be called from the main thread.
+     */
+    public void preInflate(ViewGroup parent, Collection<Integer> featureTypes) {
+        for (int featureType : DEFAULT_PRE_INFLATE_FEATURE_TYPES) {
+            enqueue(parent, featureType);
+        }
+        for (int featureType : featureTypes) {
+            enqueue(parent, featureType);
+        }
+        if (mInflateHandler != null) {
+            final HandlerThread thread = mInflateThread;
+            mInflateHandler.post(thread::quitSafely);
+            mInflateThread = null;
+            mInflateHandler = null;
+        }
+    }
+
+    private void enqueue(final ViewGroup parent, int featureType) {
+        final int baseLayout = CardPagerAdapter.getBaseLayout(featureType);
+        final int secondaryLayout = CardPagerAdapter.getSecondaryLayout(featureType);
+        final long key = key(baseLayout, secondaryLayout);
+        if (mPending.get(key) != null || mPreInflated.get(key) != null) {
+            return;
+        }
+        if (mInflateHandler == null) {
+            mInflateThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            mInflateThread.start();
+            mInflateHandler = new Handler(mInflateThread.getLooper());
+        }
+        mPending.put(key, Boolean.TRUE);
+        mInflateHandler.post(
+                () -> {
+                    BcSmartspaceCard card = null;
+                    try {
+                        card =
+                                inflateCard(
+                                        LayoutInflater.from(parent.getContext()),
+                                        parent,
+                                        baseLayout,
+                                        secondaryLayout,
+                                        true);
+                    } catch (RuntimeException e) {
+                        // Some views can only be created on the main thread, the adapter will
+                        // inflate this pair synchronously when it is needed.
+                        Log.w(TAG, "Failed to inflate card in the background", e);
+                    }
+                    final BcSmartspaceCard result = card;
+                    mMainHandler.post(
+                            () -> {
+                                mPending.remove(key);
+                                if (result != null && mPreInflated.get(key) == null) {
+                                    mPreInflated.put(key, result);
+                                }
+                            });
+                });
+    }
+
+    /** Returns a card inflated ahead of time for the given layouts, or null. */
+    public BcSmartspaceCard takePreInflated(Context context, int baseLayout, int secondaryLayout) {
+        final long key = key(baseLayout, secondaryLayout);
+        BcSmartspaceCard card = mPreInflated.get(key);
+        if (card == null) {
+            return null;
+        }
+        mPreInflated.remove(key);
+        if (card.getContext() != context) {
+            return null;
+        }
+        mPreInflatedHits++;
+        return card;
+    }
+
+    /** Inflates a card synchronously on the calling thread. */
+    public BcSmartspaceCard inflate(ViewGroup parent, int baseLayout, int secondaryLayout) {
+        return inflateCard(
+                LayoutInflater.from(parent.getContext()),
+                parent,
+                baseLayout,
+                secondaryLayout,
+                false);
+    }
+
+    private BcSmartspaceCard inflateCard(
+            LayoutInflater inflater,
+            ViewGroup parent,
+            int baseLayout,
+            int secondaryLayout,
+            boolean background) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        BcSmartspaceCard card = (BcSmartspaceCard) inflater.inflate(baseLayout, parent, false);
+        long end = SystemClock.elapsedRealtimeNanos();
+        recordLatency(baseLayout, end - start, background);
+        if (secondaryLayout != 0) {
+            start = end;
+            BcSmartspaceCardSecondary secondaryCard =
+                    (BcSmartspaceCardSecondary) inflater.inflate(secondaryLayout, card, false);
+            end = SystemClock.elapsedRealtimeNanos();
+            recordLatency(secondaryLayout, end - start, background);
+            card.setSecondaryCard(secondaryCard);
+        }
+        return card;
+    }
+
+    private void recordLatency(int layout, long nanos, boolean background) {
+        synchronized (mLatencies) {
+            LatencyStats stats = mLatencies.get(layout);
+            if (stats == null) {
+                stats = new LatencyStats();
+                mLatencies.put(layout, stats);
+            }
+            stats.record(nanos, background);
+        }
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "CardInflater:");
+        pw.println(
+                prefix
+                        + "  preInflated="
+                        + mPreInflated.size()
+                        + " pending="
+                        + mPending.size()
+                        + " preInflatedHits="
+                        + mPreInflatedHits);
+        synchronized (mLatencies) {
+            for (int i = 0; i < mLatencies.size(); i++) {
+                pw.println(
+                        prefix
+                                + "  layout=0x"
+                                + Integer.toHexString(mLatencies.keyAt(i))
+                                + " "
+                                + mLatencies.valueAt(i));
+            }
+        }
+    }
+
+    private static class LatencyStats {
+        private int mMainCount;
+        private int mBackgroundCount;
+        private long mTotalNanos;
+        private long mMaxNanos;
+
+        void record(long nanos, boolean background) {
+            if (background) {
+                mBackgroundCount++;
+            } else {
+                mMainCount++;
+            }
+            mTotalNanos += nanos;
+            mMaxNanos = Math.max(mMaxNanos, nanos);
+        }
+
+        public String toString() {
+            int count = mMainCount + mBackgroundCount;
+            return "main="
+                    + mMainCount
+                    + " background="
+                    + mBackgroundCount
+                    + " avgUs="
+                    + (count == 0 ? 0 : mTotalNanos / count / 1000)
+                    + " maxUs="
+                    + mMaxNanos / 1000;
+        }
+    }
+}
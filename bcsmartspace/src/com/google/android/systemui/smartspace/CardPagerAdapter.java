@@ -6,7 +6,6 @@ import android.content.ComponentName;
 import android.graphics.drawable.Drawable;
 import android.os.Parcelable;
 import android.util.SparseArray;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -17,10 +16,11 @@ import com.android.launcher3.icons.GraphicsUtils;
 import com.android.systemui.bcsmartspace.R;
 import com.android.systemui.plugins.BcSmartspaceDataPlugin;
 
-import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggerUtil;
 import com.google.android.systemui.smartspace.logging.BcSmartspaceCardLoggingInfo;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
@@ -31,8 +31,8 @@ public class CardPagerAdapter extends PagerAdapter {
     private int mPrimaryTextColor;
     private final View mRoot;
     private List<SmartspaceTarget> mSmartspaceTargets = new ArrayList();
-    private final List<SmartspaceTarget> mTargetsExcludingMediaAndHolidayAlarms = new ArrayList();
-    private final List<SmartspaceTarget> mMediaTargets = new ArrayList();
+    private List<SmartspaceTarget> mTargetsExcludingMediaAndHolidayAlarms = new ArrayList<>();
+    private List<SmartspaceTarget> mMediaTargets = new ArrayList<>();
     private boolean mHasOnlyDefaultDateCard = false;
     private final SparseArray<ViewHolder> mHolders = new SparseArray<>();
     private float mDozeAmount = 0.0f;
@@ -43,12 +43,20 @@ public class CardPagerAdapter extends PagerAdapter {
     private Drawable mNextAlarmImage = null;
     private SmartspaceTarget mHolidayAlarmsTarget = null;
     private boolean mIsDreaming = false;
+    private TargetListDiff mPendingDiff = null;
+    private final CardViewPool mCardViewPool;
+    private CardInflater mCardInflater = new CardInflater();
 
     public CardPagerAdapter(View view) {
         mRoot = view;
         int attrColor = GraphicsUtils.getAttrColor(view.getContext(), 16842806);
         mPrimaryTextColor = attrColor;
         mCurrentTextColor = attrColor;
+        mCardViewPool =
+                new CardViewPool(
+                        view.getContext()
+                                .getResources()
+                                .getInteger(R.integer.smartspace_card_pool_max_per_type));
     }
 
     @Override
@@ -68,6 +76,7 @@ public class CardPagerAdapter extends PagerAdapter {
         if (mHolders.get(i) == viewHolder) {
             mHolders.remove(i);
         }
+        mCardViewPool.release(viewHolder.baseLayout, viewHolder.secondaryLayout, viewHolder.card);
     }
 
     public BcSmartspaceCard getCardAtPosition(int i) {
@@ -92,6 +101,28 @@ public class CardPagerAdapter extends PagerAdapter {
     @Override
     public int getItemPosition(Object obj) {
         ViewHolder viewHolder = (ViewHolder) obj;
+        TargetListDiff targetListDiff = mPendingDiff;
+        if (targetListDiff != null) {
+            int newPosition = targetListDiff.getNewPosition(viewHolder.position);
+            if (newPosition == TargetListDiff.NO_POSITION) {
+                return POSITION_NONE;
+            }
+            boolean moved = newPosition != viewHolder.position;
+            if (moved) {
+                // Re-key the holder right away, a holder moving into its old position may
+                // already have replaced it.
+                if (mHolders.get(viewHolder.position) == viewHolder) {
+                    mHolders.remove(viewHolder.position);
+                }
+                mHolders.put(newPosition, viewHolder);
+            }
+            viewHolder.position = newPosition;
+            if (moved || targetListDiff.isChanged(newPosition)) {
+                viewHolder.target = mSmartspaceTargets.get(newPosition);
+                onBindViewHolder(viewHolder);
+            }
+            return moved ? newPosition : POSITION_UNCHANGED;
+        }
         SmartspaceTarget targetAtPosition = getTargetAtPosition(viewHolder.position);
         if (viewHolder.target == targetAtPosition) {
             return -1;
@@ -111,16 +142,27 @@ public class CardPagerAdapter extends PagerAdapter {
     @Override
     public ViewHolder instantiateItem(ViewGroup viewGroup, int i) {
         SmartspaceTarget smartspaceTarget = mSmartspaceTargets.get(i);
-        BcSmartspaceCard createBaseCard =
-                createBaseCard(viewGroup, getFeatureType(smartspaceTarget));
-        ViewHolder viewHolder = new ViewHolder(i, createBaseCard, smartspaceTarget);
+        int featureType = getFeatureType(smartspaceTarget);
+        int baseLayout = getBaseLayout(featureType);
+        int secondaryLayout = getSecondaryLayout(featureType);
+        BcSmartspaceCard createBaseCard = mCardViewPool.acquire(baseLayout, secondaryLayout);
+        if (createBaseCard == null) {
+            createBaseCard =
+                    mCardInflater.takePreInflated(
+                            viewGroup.getContext(), baseLayout, secondaryLayout);
+        }
+        if (createBaseCard == null) {
+            createBaseCard = mCardInflater.inflate(viewGroup, baseLayout, secondaryLayout);
+        }
+        ViewHolder viewHolder =
+                new ViewHolder(i, createBaseCard, smartspaceTarget, baseLayout, secondaryLayout);
         onBindViewHolder(viewHolder);
         viewGroup.addView(createBaseCard);
         mHolders.put(i, viewHolder);
         return viewHolder;
     }
 
-    private int getFeatureType(SmartspaceTarget smartspaceTarget) {
+    static int getFeatureType(SmartspaceTarget smartspaceTarget) {
         List actionChips = smartspaceTarget.getActionChips();
         int featureType = smartspaceTarget.getFeatureType();
         return (actionChips == null || actionChips.isEmpty())
@@ -128,9 +170,8 @@ public class CardPagerAdapter extends PagerAdapter {
                 : (featureType == 13 && actionChips.size() == 1) ? -2 : -1;
     }
 
-    private BcSmartspaceCard createBaseCard(ViewGroup viewGroup, int i) {
+    static int getBaseLayout(int i) {
         int i2;
-        int i3;
         if (i == -2) {
             i2 = R.layout.smartspace_card_at_store;
         } else if (i == 1) {
@@ -142,8 +183,11 @@ public class CardPagerAdapter extends PagerAdapter {
         } else {
             i2 = R.layout.smartspace_card;
         }
-        LayoutInflater from = LayoutInflater.from(viewGroup.getContext());
-        BcSmartspaceCard bcSmartspaceCard = (BcSmartspaceCard) from.inflate(i2, viewGroup, false);
+        return i2;
+    }
+
+    static int getSecondaryLayout(int i) {
+        int i3;
         if (i == -2) {
             i3 = R.layout.smartspace_card_combination_at_store;
         } else if (i == -1) {
@@ -166,31 +210,22 @@ public class CardPagerAdapter extends PagerAdapter {
             }
             i3 = R.layout.smartspace_card_generic_landscape_image;
         }
-        if (i3 != 0) {
-            bcSmartspaceCard.setSecondaryCard(
-                    (BcSmartspaceCardSecondary)
-                            from.inflate(i3, (ViewGroup) bcSmartspaceCard, false));
-        }
-        return bcSmartspaceCard;
+        return i3;
     }
 
     private void onBindViewHolder(ViewHolder viewHolder) {
         BcSmartspaceDataPlugin.SmartspaceEventNotifier smartspaceEventNotifier;
         SmartspaceTarget smartspaceTarget = mSmartspaceTargets.get(viewHolder.position);
         BcSmartspaceCard bcSmartspaceCard = viewHolder.card;
-        BcSmartspaceCardLoggingInfo build =
-                new BcSmartspaceCardLoggingInfo.Builder()
-                        .setInstanceId(InstanceId.create(smartspaceTarget))
-                        .setFeatureType(smartspaceTarget.getFeatureType())
-                        .setDisplaySurface(
-                                BcSmartSpaceUtil.getLoggingDisplaySurface(
-                                        mRoot.getContext().getPackageName(), mDozeAmount))
-                        .setRank(viewHolder.position)
-                        .setCardinality(mSmartspaceTargets.size())
-                        .setSubcardInfo(
-                                BcSmartspaceCardLoggerUtil.createSubcardLoggingInfo(
-                                        smartspaceTarget))
-                        .build();
+        // Reused across binds, the logging info is only filled in when an event is logged.
+        BcSmartspaceCardLoggingInfo build = viewHolder.loggingInfo;
+        build.bind(
+                smartspaceTarget,
+                BcSmartSpaceUtil.getLoggingDisplaySurface(
+                        mRoot.getContext().getPackageName(), mDozeAmount),
+                viewHolder.position,
+                mSmartspaceTargets.size(),
+                39);
         final BcSmartspaceDataPlugin bcSmartspaceDataPlugin = mDataProvider;
         if (bcSmartspaceDataPlugin == null) {
             smartspaceEventNotifier = null;
@@ -200,8 +235,6 @@ public class CardPagerAdapter extends PagerAdapter {
             };
         }
         bcSmartspaceCard.setEventNotifier(smartspaceEventNotifier);
-        BcSmartspaceCardLoggerUtil.forcePrimaryFeatureTypeAndInjectWeatherSubcard(
-                build, smartspaceTarget, 39);
         boolean z = true;
         if (mSmartspaceTargets.size() <= 1) {
             z = false;
@@ -218,7 +251,9 @@ public class CardPagerAdapter extends PagerAdapter {
     }
 
     public void setTargets(List<? extends Parcelable> list) {
-        mTargetsExcludingMediaAndHolidayAlarms.clear();
+        // Build a new list instead of refilling the old one so the currently displayed targets
+        // stay intact for diffing.
+        final List<SmartspaceTarget> targets = new ArrayList<>(list.size());
         mHolidayAlarmsTarget = null;
         list.forEach(
                 new Consumer() {
@@ -228,13 +263,12 @@ public class CardPagerAdapter extends PagerAdapter {
                         if (isHolidayAlarmsTarget(smartspaceTarget)) {
                             mHolidayAlarmsTarget = smartspaceTarget;
                         } else {
-                            mTargetsExcludingMediaAndHolidayAlarms.add(smartspaceTarget);
+                            targets.add(smartspaceTarget);
                         }
                     }
                 });
-        boolean z = true;
-        if (mTargetsExcludingMediaAndHolidayAlarms.isEmpty()) {
-            mTargetsExcludingMediaAndHolidayAlarms.add(
+        if (targets.isEmpty()) {
+            targets.add(
                     new SmartspaceTarget.Builder(
                                     "date_card_794317_92634",
                                     new ComponentName(mRoot.getContext(), CardPagerAdapter.class),
@@ -242,13 +276,16 @@ public class CardPagerAdapter extends PagerAdapter {
                             .setFeatureType(1)
                             .build());
         }
+        // The lists are handed out through getTargets() and kept for diffing, so never change
+        // them once published.
+        mTargetsExcludingMediaAndHolidayAlarms = Collections.unmodifiableList(targets);
+        boolean z = true;
         if (mTargetsExcludingMediaAndHolidayAlarms.size() != 1
                 || mTargetsExcludingMediaAndHolidayAlarms.get(0).getFeatureType() != 1) {
             z = false;
         }
         mHasOnlyDefaultDateCard = z;
         updateTargetVisibility();
-        notifyDataSetChanged();
     }
 
     public void setDataProvider(BcSmartspaceDataPlugin bcSmartspaceDataPlugin) {
@@ -284,10 +321,11 @@ public class CardPagerAdapter extends PagerAdapter {
     }
 
     public void setMediaTarget(SmartspaceTarget smartspaceTarget) {
-        mMediaTargets.clear();
+        final List<SmartspaceTarget> mediaTargets = new ArrayList<>();
         if (smartspaceTarget != null) {
-            mMediaTargets.add(smartspaceTarget);
+            mediaTargets.add(smartspaceTarget);
         }
+        mMediaTargets = Collections.unmodifiableList(mediaTargets);
         updateTargetVisibility();
     }
 
@@ -309,44 +347,98 @@ public class CardPagerAdapter extends PagerAdapter {
 
     private void refreshCards() {
         for (int i = 0; i < mHolders.size(); i++) {
-            onBindViewHolder(mHolders.get(i));
+            onBindViewHolder(mHolders.valueAt(i));
         }
     }
 
     private void refreshCardColors() {
         for (int i = 0; i < mHolders.size(); i++) {
-            mHolders.get(i).card.setPrimaryTextColor(mCurrentTextColor);
-            mHolders.get(i).card.setDozeAmount(mDozeAmount);
+            ViewHolder viewHolder = mHolders.valueAt(i);
+            viewHolder.card.setPrimaryTextColor(mCurrentTextColor);
+            viewHolder.card.setDozeAmount(mDozeAmount);
         }
     }
 
     private void updateTargetVisibility() {
         boolean z;
         if (mMediaTargets.isEmpty()) {
-            mSmartspaceTargets = mTargetsExcludingMediaAndHolidayAlarms;
-            notifyDataSetChanged();
+            updateSmartspaceTargets(mTargetsExcludingMediaAndHolidayAlarms);
             return;
         }
         float f = mDozeAmount;
         if (f == 0.0f || !(z = mHasOnlyDefaultDateCard)) {
-            mSmartspaceTargets = mTargetsExcludingMediaAndHolidayAlarms;
-            notifyDataSetChanged();
+            updateSmartspaceTargets(mTargetsExcludingMediaAndHolidayAlarms);
         } else if (f != 1.0f || !z) {
         } else {
-            mSmartspaceTargets = mMediaTargets;
+            updateSmartspaceTargets(mMediaTargets);
+        }
+    }
+
+    private void updateSmartspaceTargets(List<SmartspaceTarget> list) {
+        List<SmartspaceTarget> oldTargets = mSmartspaceTargets;
+        if (oldTargets == list) {
+            return;
+        }
+        mSmartspaceTargets = list;
+        TargetListDiff targetListDiff =
+                TargetListDiff.calculate(oldTargets, list, CardPagerAdapter::getFeatureType);
+        if (targetListDiff.isEmpty()) {
+            return;
+        }
+        if (!targetListDiff.hasStructuralChanges()) {
+            // Positions are stable, so only rebind the cards whose content changed.
+            for (int i = 0; i < mHolders.size(); i++) {
+                ViewHolder viewHolder = mHolders.valueAt(i);
+                if (targetListDiff.isChanged(viewHolder.position)) {
+                    viewHolder.target = list.get(viewHolder.position);
+                    onBindViewHolder(viewHolder);
+                }
+            }
+            return;
+        }
+        // getItemPosition() re-keys the holders that move, destroyItem() drops the removed
+        // ones and instantiateItem() adds the new ones.
+        mPendingDiff = targetListDiff;
+        try {
             notifyDataSetChanged();
+        } finally {
+            mPendingDiff = null;
         }
     }
 
+    public void setCardInflater(CardInflater cardInflater) {
+        mCardInflater = cardInflater;
+    }
+
+    public void setMaxPooledCardsPerType(int max) {
+        mCardViewPool.setDefaultMaxPerType(max);
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "CardPagerAdapter: count=" + getCount() + " bound=" + mHolders.size());
+        mCardViewPool.dump(pw, prefix + "  ");
+    }
+
     public static class ViewHolder {
         public final BcSmartspaceCard card;
-        public final int position;
+        public int position;
         public SmartspaceTarget target;
-
-        ViewHolder(int i, BcSmartspaceCard bcSmartspaceCard, SmartspaceTarget smartspaceTarget) {
+        final int baseLayout;
+        final int secondaryLayout;
+        final BcSmartspaceCardLoggingInfo loggingInfo =
+                new BcSmartspaceCardLoggingInfo.Builder().build();
+
+        ViewHolder(
+                int i,
+                BcSmartspaceCard bcSmartspaceCard,
+                SmartspaceTarget smartspaceTarget,
+                int baseLayout,
+                int secondaryLayout) {
             position = i;
             card = bcSmartspaceCard;
             target = smartspaceTarget;
+            this.baseLayout = baseLayout;
+            this.secondaryLayout = secondaryLayout;
         }
     }
 }
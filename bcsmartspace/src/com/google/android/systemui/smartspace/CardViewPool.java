@@ -0,0 +1,111 @@
+package com.google.android.systemui.smartspace;
+
+import android.util.LongSparseArray;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+
+/**
+ * Bounded pool of detached {@link BcSmartspaceCard}s keyed by the (base layout, secondary layout)
+ * pair they were inflated from, so that paging through cards does not inflate the same XML again.
+ */
+public class CardViewPool {
+    private final LongSparseArray<ArrayDeque<BcSmartspaceCard>> mPool = new LongSparseArray<>();
+    private final LongSparseArray<Integer> mMaxPerType = new LongSparseArray<>();
+    private int mDefaultMaxPerType;
+    private int mHits = 0;
+    private int mMisses = 0;
+    private int mReleased = 0;
+    private int mDropped = 0;
+
+    public CardViewPool(int defaultMaxPerType) {
+        mDefaultMaxPerType = defaultMaxPerType;
+    }
+
+    private static long key(int baseLayout, int secondaryLayout) {
+        return (((long) baseLayout) << 32) | (secondaryLayout & 0xffffffffL);
+    }
+
+    public void setDefaultMaxPerType(int max) {
+        mDefaultMaxPerType = max;
+        trim();
+    }
+
+    public void setMaxPerType(int baseLayout, int secondaryLayout, int max) {
+        mMaxPerType.put(key(baseLayout, secondaryLayout), max);
+        trim();
+    }
+
+    private int getMaxPerType(long key) {
+        Integer max = mMaxPerType.get(key);
+        return max != null ? max : mDefaultMaxPerType;
+    }
+
+    /** Returns a pooled card for the given layouts, or null if a new one has to be inflated. */
+    public BcSmartspaceCard acquire(int baseLayout, int secondaryLayout) {
+        ArrayDeque<BcSmartspaceCard> cards = mPool.get(key(baseLayout, secondaryLayout));
+        BcSmartspaceCard card = cards == null ? null : cards.pollFirst();
+        if (card == null) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return card;
+    }
+
+    /** Offers a detached card back to the pool, returns false if the pool for its type is full. */
+    public boolean release(int baseLayout, int secondaryLayout, BcSmartspaceCard card) {
+        if (card.getParent() != null) {
+            return false;
+        }
+        long key = key(baseLayout, secondaryLayout);
+        ArrayDeque<BcSmartspaceCard> cards = mPool.get(key);
+        if (cards == null) {
+            cards = new ArrayDeque<>();
+            mPool.put(key, cards);
+        }
+        if (cards.size() >= getMaxPerType(key)) {
+            mDropped++;
+            return false;
+        }
+        card.resetForReuse();
+        cards.addLast(card);
+        mReleased++;
+        return true;
+    }
+
+    private void trim() {
+        for (int i = 0; i < mPool.size(); i++) {
+            ArrayDeque<BcSmartspaceCard> cards = mPool.valueAt(i);
+            int max = getMaxPerType(mPool.keyAt(i));
+            while (cards.size() > max) {
+                cards.pollLast();
+                mDropped++;
+            }
+        }
+    }
+
+    public void clear() {
+        mPool.clear();
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "CardViewPool:");
+        pw.println(prefix + "  hits=" + mHits + " misses=" + mMisses);
+        pw.println(prefix + "  released=" + mReleased + " dropped=" + mDropped);
+        pw.println(prefix + "  defaultMaxPerType=" + mDefaultMaxPerType);
+        for (int i = 0; i < mPool.size(); i++) {
+            long key = mPool.keyAt(i);
+            pw.println(
+                    prefix
+                            + "  layouts=0x"
+                            + Integer.toHexString((int) (key >>> 32))
+                            + "/0x"
+                            + Integer.toHexString((int) key)
+                            + " pooled="
+                            + mPool.valueAt(i).size()
+                            + " max="
+                            + getMaxPerType(key));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.google.android.systemui.smartspace;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.icu.text.DateFormat;
+import android.icu.text.DisplayContext;
+import android.icu.util.Calendar;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.ArrayMap;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Formats the date shown by every {@link IcuDateTextView} in the process. There is one ICU
+ * formatter per skeleton, locale and capitalization, the formatted text is kept until the next
+ * instant it can change, and all subscribers are updated together from a single callback and a
+ * single set of time broadcast receivers. Must only be used from the main thread.
+ */
+public class DateTextService {
+    public interface Subscriber {
+        void onDateTextChanged(String text);
+    }
+
+    private static DateTextService sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayMap<Subscriber, FormatKey> mSubscribers = new ArrayMap<>();
+    private final ArrayMap<FormatKey, CachedFormat> mFormats = new ArrayMap<>();
+    private final Runnable mTicker = this::dispatch;
+    private final BroadcastReceiver mIntentReceiver =
+            new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    String action = intent.getAction();
+                    if ("android.intent.action.LOCALE_CHANGED".equals(action)) {
+                        // Subscribers follow the default locale, so move them to formatters
+                        // for the new one.
+                        mFormats.clear();
+                        Locale locale = Locale.getDefault();
+                        for (int i = 0; i < mSubscribers.size(); i++) {
+                            FormatKey formatKey = mSubscribers.valueAt(i);
+                            mSubscribers.setValueAt(
+                                    i,
+                                    new FormatKey(
+                                            formatKey.skeleton,
+                                            locale,
+                                            formatKey.capitalization));
+                        }
+                    } else if ("android.intent.action.TIMEZONE_CHANGED".equals(action)) {
+                        // Formatters capture the default time zone when they are created.
+                        mFormats.clear();
+                    } else {
+                        for (int i = 0; i < mFormats.size(); i++) {
+                            mFormats.valueAt(i).text = null;
+                        }
+                    }
+                    dispatch();
+                }
+            };
+    private Context mReceiverContext;
+    private int mFormatterCount = 0;
+    private int mFormatCount = 0;
+    private int mCacheHitCount = 0;
+
+    public static DateTextService getInstance() {
+        if (sInstance == null) {
+            sInstance = new DateTextService();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Subscribes to the date formatted with the given skeleton in the default locale, the current
+     * text is delivered right away and again whenever the locale changes.
+     */
+    public void subscribe(
+            Context context, String skeleton, DisplayContext capitalization, Subscriber subscriber) {
+        FormatKey formatKey = new FormatKey(skeleton, Locale.getDefault(), capitalization);
+        mSubscribers.put(subscriber, formatKey);
+        if (mReceiverContext == null) {
+            IntentFilter intentFilter = new IntentFilter();
+            intentFilter.addAction("android.intent.action.TIME_SET");
+            intentFilter.addAction("android.intent.action.TIMEZONE_CHANGED");
+            intentFilter.addAction("android.intent.action.LOCALE_CHANGED");
+            // The ticker runs on uptime, which stops while the device sleeps, so also refresh
+            // when the date changes.
+            intentFilter.addAction("android.intent.action.DATE_CHANGED");
+            mReceiverContext = context.getApplicationContext();
+            mReceiverContext.registerReceiver(mIntentReceiver, intentFilter);
+        }
+        long currentTimeMillis = System.currentTimeMillis();
+        subscriber.onDateTextChanged(getText(formatKey, currentTimeMillis));
+        scheduleNextTick(currentTimeMillis);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        if (mSubscribers.remove(subscriber) == null || !mSubscribers.isEmpty()) {
+            return;
+        }
+        mHandler.removeCallbacks(mTicker);
+        if (mReceiverContext != null) {
+            mReceiverContext.unregisterReceiver(mIntentReceiver);
+            mReceiverContext = null;
+        }
+    }
+
+    private void dispatch() {
+        long currentTimeMillis = System.currentTimeMillis();
+        // Subscribers may unsubscribe while being updated.
+        ArrayList<Subscriber> subscribers = new ArrayList<>(mSubscribers.keySet());
+        for (Subscriber subscriber : subscribers) {
+            FormatKey formatKey = mSubscribers.get(subscriber);
+            if (formatKey != null) {
+                subscriber.onDateTextChanged(getText(formatKey, currentTimeMillis));
+            }
+        }
+        scheduleNextTick(currentTimeMillis);
+    }
+
+    private String getText(FormatKey formatKey, long currentTimeMillis) {
+        CachedFormat cachedFormat = mFormats.get(formatKey);
+        if (cachedFormat == null) {
+            DateFormat formatter =
+                    DateFormat.getInstanceForSkeleton(formatKey.skeleton, formatKey.locale);
+            formatter.setContext(formatKey.capitalization);
+            cachedFormat = new CachedFormat(formatter);
+            mFormats.put(formatKey, cachedFormat);
+            mFormatterCount++;
+        }
+        if (cachedFormat.text == null
+                || currentTimeMillis < cachedFormat.validFromMillis
+                || currentTimeMillis >= cachedFormat.validUntilMillis) {
+            cachedFormat.text = cachedFormat.formatter.format(Long.valueOf(currentTimeMillis));
+            cachedFormat.validFromMillis = currentTimeMillis;
+            cachedFormat.validUntilMillis =
+                    getNextChangeMillis(formatKey.skeleton, currentTimeMillis);
+            mFormatCount++;
+        } else {
+            mCacheHitCount++;
+        }
+        return cachedFormat.text;
+    }
+
+    private void scheduleNextTick(long currentTimeMillis) {
+        mHandler.removeCallbacks(mTicker);
+        if (mSubscribers.isEmpty()) {
+            return;
+        }
+        long nextChangeMillis = Long.MAX_VALUE;
+        for (int i = 0; i < mSubscribers.size(); i++) {
+            nextChangeMillis =
+                    Math.min(
+                            nextChangeMillis,
+                            getNextChangeMillis(
+                                    mSubscribers.valueAt(i).skeleton, currentTimeMillis));
+        }
+        mHandler.postDelayed(mTicker, Math.max(0, nextChangeMillis - currentTimeMillis));
+    }
+
+    /**
+     * Returns the next instant after the given time at which text formatted with the skeleton
+     * can change, based on the smallest calendar field the skeleton contains.
+     */
+    static long getNextChangeMillis(String skeleton, long currentTimeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(currentTimeMillis);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (containsAny(skeleton, "sSA")) {
+            calendar.add(Calendar.SECOND, 1);
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.SECOND, 0);
+        if (containsAny(skeleton, "m")) {
+            calendar.add(Calendar.MINUTE, 1);
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.MINUTE, 0);
+        if (containsAny(skeleton, "hHkKjJCabB")) {
+            calendar.add(Calendar.HOUR_OF_DAY, 1);
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.add(Calendar.DATE, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private static boolean containsAny(String str, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (str.indexOf(chars.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "DateTextService:");
+        pw.println(
+                prefix
+                        + "  subscribers="
+                        + mSubscribers.size()
+                        + " formatters="
+                        + mFormats.size()
+                        + " created="
+                        + mFormatterCount
+                        + " formats="
+                        + mFormatCount
+                        + " cacheHits="
+                        + mCacheHitCount);
+    }
+
+    private static final class FormatKey {
+        final String skeleton;
+        final Locale locale;
+        final DisplayContext capitalization;
+
+        FormatKey(String skeleton, Locale locale, DisplayContext capitalization) {
+            this.skeleton = skeleton;
+            this.locale = locale;
+            this.capitalization = capitalization;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FormatKey)) {
+                return false;
+            }
+            FormatKey formatKey = (FormatKey) obj;
+            return skeleton.equals(formatKey.skeleton)
+                    && locale.equals(formatKey.locale)
+                    && capitalization == formatKey.capitalization;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(skeleton, locale, capitalization);
+        }
+    }
+
+    private static final class CachedFormat {
+        final DateFormat formatter;
+        String text;
+        long validFromMillis;
+        long validUntilMillis;
+
+        CachedFormat(DateFormat formatter) {
+            this.formatter = formatter;
+        }
+    }
+}
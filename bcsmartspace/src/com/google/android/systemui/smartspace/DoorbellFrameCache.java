@@ -0,0 +1,126 @@
+package com.google.android.systemui.smartspace;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.LruCache;
+
+import java.io.PrintWriter;
+import java.util.Objects;
+
+/**
+ * Process wide LRU of decoded doorbell frames used by {@link BcSmartspaceCardDoorbell}, keyed by
+ * frame URI and decoded height and bounded by the number of bytes the bitmaps hold, so rebinding
+ * a doorbell sequence does not read and decode its frames again. Cleared when the process is
+ * asked to trim memory.
+ */
+public final class DoorbellFrameCache implements ComponentCallbacks2 {
+    private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static DoorbellFrameCache sInstance;
+
+    private final LruCache<Key, Bitmap> mCache =
+            new LruCache<Key, Bitmap>(MAX_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(Key key, Bitmap bitmap) {
+                    return bitmap.getAllocationByteCount();
+                }
+            };
+    private int mTrimCount = 0;
+
+    private DoorbellFrameCache() {}
+
+    public static synchronized DoorbellFrameCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DoorbellFrameCache();
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    public Bitmap get(Uri uri, int height) {
+        return mCache.get(new Key(uri, height));
+    }
+
+    public void put(Uri uri, int height, Bitmap bitmap) {
+        mCache.put(new Key(uri, height), bitmap);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mTrimCount++;
+            mCache.evictAll();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mTrimCount++;
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration configuration) {}
+
+    public static void dump(PrintWriter pw, String prefix) {
+        DoorbellFrameCache instance;
+        synchronized (DoorbellFrameCache.class) {
+            instance = sInstance;
+        }
+        pw.println(prefix + "DoorbellFrameCache:");
+        if (instance != null) {
+            instance.dumpStats(pw, prefix);
+        }
+    }
+
+    private void dumpStats(PrintWriter pw, String prefix) {
+        pw.println(
+                prefix
+                        + "  entries="
+                        + mCache.snapshot().size()
+                        + " sizeBytes="
+                        + mCache.size()
+                        + "/"
+                        + mCache.maxSize());
+        pw.println(
+                prefix
+                        + "  hits="
+                        + mCache.hitCount()
+                        + " misses="
+                        + mCache.missCount()
+                        + " evictions="
+                        + mCache.evictionCount()
+                        + " trims="
+                        + mTrimCount);
+    }
+
+    private static final class Key {
+        private final Uri mUri;
+        private final int mHeight;
+
+        Key(Uri uri, int height) {
+            mUri = uri;
+            mHeight = height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) obj;
+            return mHeight == key.mHeight && Objects.equals(mUri, key.mUri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mUri, mHeight);
+        }
+    }
+}
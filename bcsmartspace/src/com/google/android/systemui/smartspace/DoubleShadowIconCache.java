@@ -0,0 +1,161 @@
+package com.google.android.systemui.smartspace;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Icon;
+import android.util.LruCache;
+
+import java.io.PrintWriter;
+import java.util.Objects;
+
+/**
+ * Process wide LRU of rendered icon and shadow bitmaps used by {@link DoubleShadowIconDrawable},
+ * bounded by the number of bytes the bitmaps hold.
+ */
+public final class DoubleShadowIconCache {
+    private static final int MAX_SIZE_BYTES = 1024 * 1024;
+
+    private static DoubleShadowIconCache sInstance;
+
+    private final LruCache<Key, Entry> mCache =
+            new LruCache<Key, Entry>(MAX_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(Key key, Entry entry) {
+                    return entry.icon.getAllocationByteCount()
+                            + entry.shadow.getAllocationByteCount();
+                }
+            };
+
+    private DoubleShadowIconCache() {}
+
+    public static synchronized DoubleShadowIconCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new DoubleShadowIconCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns a stable identity for the given icon, or null if the icon cannot be cached because
+     * its content cannot be identified cheaply.
+     */
+    public static Object getIconIdentity(Icon icon) {
+        if (icon == null || icon.getTintList() != null) {
+            return null;
+        }
+        switch (icon.getType()) {
+            case Icon.TYPE_BITMAP:
+            case Icon.TYPE_ADAPTIVE_BITMAP:
+                Bitmap bitmap = icon.getBitmap();
+                return bitmap == null
+                        ? null
+                        : "bitmap:"
+                                + bitmap.getGenerationId()
+                                + ":"
+                                + bitmap.getWidth()
+                                + "x"
+                                + bitmap.getHeight();
+            case Icon.TYPE_RESOURCE:
+                return "res:" + icon.getResPackage() + "/" + icon.getResId();
+            case Icon.TYPE_URI:
+            case Icon.TYPE_URI_ADAPTIVE_BITMAP:
+                return "uri:" + icon.getUriString();
+            default:
+                return null;
+        }
+    }
+
+    public Entry get(Key key) {
+        return mCache.get(key);
+    }
+
+    public void put(Key key, Bitmap icon, Bitmap shadow) {
+        mCache.put(key, new Entry(icon, shadow));
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "DoubleShadowIconCache:");
+        pw.println(
+                prefix
+                        + "  entries="
+                        + mCache.snapshot().size()
+                        + " sizeBytes="
+                        + mCache.size()
+                        + "/"
+                        + mCache.maxSize());
+        pw.println(
+                prefix
+                        + "  hits="
+                        + mCache.hitCount()
+                        + " misses="
+                        + mCache.missCount()
+                        + " evictions="
+                        + mCache.evictionCount());
+    }
+
+    /** Identifies a rendered icon by its source, size and the shadow it was drawn with. */
+    public static final class Key {
+        private final Object mSource;
+        private final int mSize;
+        private final float mAmbientShadowRadius;
+        private final float mKeyShadowRadius;
+        private final float mKeyShadowDx;
+        private final float mKeyShadowDy;
+
+        public Key(
+                Object source,
+                int size,
+                float ambientShadowRadius,
+                float keyShadowRadius,
+                float keyShadowDx,
+                float keyShadowDy) {
+            mSource = source;
+            mSize = size;
+            mAmbientShadowRadius = ambientShadowRadius;
+            mKeyShadowRadius = keyShadowRadius;
+            mKeyShadowDx = keyShadowDx;
+            mKeyShadowDy = keyShadowDy;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) obj;
+            return mSize == key.mSize
+                    && mAmbientShadowRadius == key.mAmbientShadowRadius
+                    && mKeyShadowRadius == key.mKeyShadowRadius
+                    && mKeyShadowDx == key.mKeyShadowDx
+                    && mKeyShadowDy == key.mKeyShadowDy
+                    && Objects.equals(mSource, key.mSource);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                    mSource,
+                    mSize,
+                    mAmbientShadowRadius,
+                    mKeyShadowRadius,
+                    mKeyShadowDx,
+                    mKeyShadowDy);
+        }
+    }
+
+    public static final class Entry {
+        public final Bitmap icon;
+        public final Bitmap shadow;
+
+        Entry(Bitmap icon, Bitmap shadow) {
+            this.icon = icon;
+            this.shadow = shadow;
+        }
+    }
+}
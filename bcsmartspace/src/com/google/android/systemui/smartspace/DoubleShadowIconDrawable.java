@@ -1,56 +1,232 @@
 package com.google.android.systemui.smartspace;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BlurMaskFilter;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
 import android.graphics.drawable.LayerDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 
 import com.android.internal.graphics.ColorUtils;
 import com.android.systemui.bcsmartspace.R;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class DoubleShadowIconDrawable extends LayerDrawable {
+    private static final int SHADOW_LAYER = 0;
+
+    private static ThreadPoolExecutor sShadowExecutor;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
     private Drawable mIconDrawable;
     private Drawable mShadowDrawable;
+    private int mShadowAlpha = 255;
+    private Future<?> mShadowFuture;
+    private boolean mCancelled = false;
 
-    public DoubleShadowIconDrawable(Drawable drawable, Context context) {
+    /** Icons without a stable identity are rendered without going through the cache. */
+    private DoubleShadowIconDrawable(Drawable drawable, Object iconIdentity, Context context) {
         super(new Drawable[0]);
+        DoubleShadowIconCache.Key key =
+                iconIdentity == null ? null : createCacheKey(iconIdentity, context);
+        DoubleShadowIconCache.Entry entry =
+                key == null ? null : DoubleShadowIconCache.getInstance().get(key);
+        if (entry != null) {
+            setIconAndShadow(entry.icon, entry.shadow, context);
+            return;
+        }
         int dimensionPixelSize =
                 context.getResources().getDimensionPixelSize(R.dimen.enhanced_smartspace_icon_size);
         generateIconAndShadow(
-                drawable, context, dimensionPixelSize, dimensionPixelSize, dimensionPixelSize);
+                drawable, context, dimensionPixelSize, dimensionPixelSize, dimensionPixelSize, key);
+    }
+
+    /**
+     * Creates a drawable for the given icon, only loading the icon when its rendered bitmaps are
+     * not cached yet. Returns null if the icon could not be loaded.
+     */
+    public static DoubleShadowIconDrawable fromIcon(Icon icon, Context context) {
+        if (icon == null) {
+            return null;
+        }
+        Object iconIdentity = DoubleShadowIconCache.getIconIdentity(icon);
+        if (iconIdentity != null) {
+            DoubleShadowIconCache.Entry entry =
+                    DoubleShadowIconCache.getInstance().get(createCacheKey(iconIdentity, context));
+            if (entry != null) {
+                return new DoubleShadowIconDrawable(entry, context);
+            }
+        }
+        Drawable iconDrawable = BcSmartSpaceUtil.getIconDrawable(icon, context);
+        if (iconDrawable == null) {
+            return null;
+        }
+        return new DoubleShadowIconDrawable(iconDrawable, iconIdentity, context);
+    }
+
+    /**
+     * Creates a drawable for the given drawable, keyed by its constant state so the same drawable
+     * passed again, e.g. on every bind, reuses the rendered bitmaps. A mutated drawable keeps its
+     * constant state across further mutate() calls. Drawables without one are not cached.
+     */
+    public static DoubleShadowIconDrawable fromDrawable(Drawable drawable, Context context) {
+        Drawable.ConstantState iconIdentity = drawable.getConstantState();
+        if (iconIdentity != null) {
+            DoubleShadowIconCache.Entry entry =
+                    DoubleShadowIconCache.getInstance().get(createCacheKey(iconIdentity, context));
+            if (entry != null) {
+                return new DoubleShadowIconDrawable(entry, context);
+            }
+        }
+        return new DoubleShadowIconDrawable(drawable, iconIdentity, context);
+    }
+
+    private DoubleShadowIconDrawable(DoubleShadowIconCache.Entry entry, Context context) {
+        super(new Drawable[0]);
+        setIconAndShadow(entry.icon, entry.shadow, context);
+    }
+
+    private static DoubleShadowIconCache.Key createCacheKey(Object iconIdentity, Context context) {
+        Resources resources = context.getResources();
+        return new DoubleShadowIconCache.Key(
+                iconIdentity,
+                resources.getDimensionPixelSize(R.dimen.enhanced_smartspace_icon_size),
+                resources.getDimensionPixelSize(R.dimen.ambient_text_shadow_radius),
+                resources.getDimensionPixelSize(R.dimen.key_text_shadow_radius),
+                resources.getDimensionPixelSize(R.dimen.key_text_shadow_dx),
+                resources.getDimensionPixelSize(R.dimen.key_text_shadow_dy));
     }
 
-    private void generateIconAndShadow(Drawable drawable, Context context, int i, int i2, int i3) {
+    private void generateIconAndShadow(
+            Drawable drawable,
+            Context context,
+            int i,
+            int i2,
+            int i3,
+            DoubleShadowIconCache.Key key) {
         Bitmap createBitmap = Bitmap.createBitmap(i3, i3, Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(createBitmap);
         drawable.setBounds(0, 0, i, i2);
         int i4 = i3 / 2;
         canvas.translate(((-i) / 2) + i4, ((-i2) / 2) + i4);
         drawable.draw(canvas);
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            Bitmap shadowBitmap = generateShadowBitmap(createBitmap, context);
+            if (key != null) {
+                DoubleShadowIconCache.getInstance().put(key, createBitmap, shadowBitmap);
+            }
+            setIconAndShadow(createBitmap, shadowBitmap, context);
+            return;
+        }
+        // Show the plain icon right away and swap the shadow in once it has been blurred off the
+        // main thread, so the blur does not land in the frame that first shows the card.
         mIconDrawable = new BitmapDrawable(context.getResources(), createBitmap);
-        Drawable generateShadowDrawable = generateShadowDrawable(createBitmap, context);
-        mShadowDrawable = generateShadowDrawable;
-        addLayer(generateShadowDrawable);
+        mShadowDrawable = new ColorDrawable(0);
+        addLayer(mShadowDrawable);
         addLayer(mIconDrawable);
         setBounds(0, 0, i3, i3);
+        final Resources resources = context.getResources();
+        final float[] shadowParams = getShadowParams(resources);
+        mShadowFuture =
+                getShadowExecutor()
+                        .submit(
+                                () -> {
+                                    Bitmap shadowBitmap =
+                                            generateShadowBitmap(createBitmap, shadowParams);
+                                    if (key != null) {
+                                        DoubleShadowIconCache.getInstance()
+                                                .put(key, createBitmap, shadowBitmap);
+                                    }
+                                    mMainHandler.post(() -> onShadowReady(shadowBitmap, resources));
+                                });
+    }
+
+    private void onShadowReady(Bitmap shadowBitmap, Resources resources) {
+        mShadowFuture = null;
+        if (mCancelled) {
+            return;
+        }
+        mShadowDrawable = new BitmapDrawable(resources, shadowBitmap);
+        mShadowDrawable.setAlpha(mShadowAlpha);
+        setDrawable(SHADOW_LAYER, mShadowDrawable);
+        mShadowDrawable.setBounds(mIconDrawable.getBounds());
+        invalidateSelf();
+    }
+
+    /**
+     * Stops any pending shadow work, called once the drawable is no longer shown because its card
+     * has been bound to something else.
+     */
+    public void cancel() {
+        mCancelled = true;
+        if (mShadowFuture != null) {
+            mShadowFuture.cancel(false);
+            mShadowFuture = null;
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getShadowExecutor() {
+        if (sShadowExecutor == null) {
+            sShadowExecutor =
+                    new ThreadPoolExecutor(
+                            0,
+                            1,
+                            10L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            r ->
+                                    new Thread(
+                                            () -> {
+                                                Process.setThreadPriority(
+                                                        Process.THREAD_PRIORITY_BACKGROUND);
+                                                r.run();
+                                            },
+                                            "DoubleShadowIcon"));
+        }
+        return sShadowExecutor;
+    }
+
+    private void setIconAndShadow(Bitmap icon, Bitmap shadow, Context context) {
+        // The cached bitmaps are shared, each drawable wraps them with its own tint and alpha.
+        mIconDrawable = new BitmapDrawable(context.getResources(), icon);
+        mShadowDrawable = new BitmapDrawable(context.getResources(), shadow);
+        addLayer(mShadowDrawable);
+        addLayer(mIconDrawable);
+        setBounds(0, 0, icon.getWidth(), icon.getHeight());
+    }
+
+    private static float[] getShadowParams(Resources resources) {
+        return new float[] {
+            resources.getDimensionPixelSize(R.dimen.ambient_text_shadow_radius),
+            resources.getDimensionPixelSize(R.dimen.key_text_shadow_radius),
+            resources.getDimensionPixelSize(R.dimen.key_text_shadow_dx),
+            resources.getDimensionPixelSize(R.dimen.key_text_shadow_dy)
+        };
+    }
+
+    private static Bitmap generateShadowBitmap(Bitmap bitmap, Context context) {
+        return generateShadowBitmap(bitmap, getShadowParams(context.getResources()));
     }
 
-    private static Drawable generateShadowDrawable(Bitmap bitmap, Context context) {
+    private static Bitmap generateShadowBitmap(Bitmap bitmap, float[] shadowParams) {
         Bitmap createBitmap =
                 Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(createBitmap);
-        float dimensionPixelSize =
-                context.getResources().getDimensionPixelSize(R.dimen.ambient_text_shadow_radius);
-        float dimensionPixelSize2 =
-                context.getResources().getDimensionPixelSize(R.dimen.key_text_shadow_radius);
-        float dimensionPixelSize3 =
-                context.getResources().getDimensionPixelSize(R.dimen.key_text_shadow_dx);
-        float dimensionPixelSize4 =
-                context.getResources().getDimensionPixelSize(R.dimen.key_text_shadow_dy);
+        float dimensionPixelSize = shadowParams[0];
+        float dimensionPixelSize2 = shadowParams[1];
+        float dimensionPixelSize3 = shadowParams[2];
+        float dimensionPixelSize4 = shadowParams[3];
         int[] iArr = new int[2];
         Paint paint = new Paint(3);
         Paint paint2 = new Paint(3);
@@ -71,7 +247,7 @@ public class DoubleShadowIconDrawable extends LayerDrawable {
                     iArr[1] + dimensionPixelSize4,
                     paint2);
         }
-        return new BitmapDrawable(context.getResources(), createBitmap);
+        return createBitmap;
     }
 
     @Override
@@ -80,9 +256,10 @@ public class DoubleShadowIconDrawable extends LayerDrawable {
         if (drawable != null) {
             drawable.setTint(i);
         }
+        mShadowAlpha = ColorUtils.calculateLuminance(i) > 0.5d ? 255 : 0;
         Drawable drawable2 = mShadowDrawable;
         if (drawable2 != null) {
-            drawable2.setAlpha(ColorUtils.calculateLuminance(i) > 0.5d ? 255 : 0);
+            drawable2.setAlpha(mShadowAlpha);
         }
     }
 }
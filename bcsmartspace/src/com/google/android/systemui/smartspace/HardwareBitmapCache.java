@@ -0,0 +1,258 @@
+package com.google.android.systemui.smartspace;
+
+import android.app.smartspace.SmartspaceAction;
+import android.app.smartspace.SmartspaceTarget;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.Process;
+import android.util.ArrayMap;
+
+import com.android.systemui.bcsmartspace.R;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts the bitmaps of incoming targets to {@link Bitmap.Config#HARDWARE} once, before they
+ * are published, so their pixels live in graphics memory instead of the Java heap, and shares one
+ * copy between all targets with the same content. Pixels are only hashed and compared off the
+ * main thread. Disabled unless {@code R.bool.smartspace_hardware_bitmaps} is set.
+ */
+public final class HardwareBitmapCache {
+    private static HardwareBitmapCache sInstance;
+
+    private final ThreadPoolExecutor mDecodeExecutor = createDecodeExecutor();
+    // Weak keys so a bitmap shared by several targets is only hashed and converted once.
+    private final WeakHashMap<Bitmap, Bitmap> mConverted = new WeakHashMap<>();
+    private final ArrayMap<Key, WeakReference<Bitmap>> mByContent = new ArrayMap<>();
+    private final boolean mEnabled;
+    private int mConversionCount = 0;
+    private int mSharedCount = 0;
+    private int mFailureCount = 0;
+
+    private HardwareBitmapCache(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    private static ThreadPoolExecutor createDecodeExecutor() {
+        ThreadPoolExecutor threadPoolExecutor =
+                new ThreadPoolExecutor(
+                        1,
+                        1,
+                        10,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        runnable ->
+                                new Thread(
+                                        () -> {
+                                            Process.setThreadPriority(
+                                                    Process.THREAD_PRIORITY_BACKGROUND);
+                                            runnable.run();
+                                        },
+                                        "HardwareBitmapDecode"));
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    public static synchronized HardwareBitmapCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance =
+                    new HardwareBitmapCache(
+                            context.getResources().getBoolean(R.bool.smartspace_hardware_bitmaps));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the bitmaps in the base action extras of the targets with shared hardware copies,
+     * so cards bind the copies and the software pixels can be collected. The conversion runs in
+     * the background, {@code onConverted} is called on that thread once all targets are done,
+     * or right away if the cache is disabled.
+     */
+    public void convertTargets(List<SmartspaceTarget> targets, Runnable onConverted) {
+        if (!mEnabled) {
+            onConverted.run();
+            return;
+        }
+        mDecodeExecutor.execute(
+                () -> {
+                    for (SmartspaceTarget target : targets) {
+                        convertExtras(target);
+                    }
+                    onConverted.run();
+                });
+    }
+
+    private void convertExtras(SmartspaceTarget target) {
+        SmartspaceAction baseAction = target.getBaseAction();
+        Bundle extras = baseAction == null ? null : baseAction.getExtras();
+        if (extras == null) {
+            return;
+        }
+        for (String key : new ArrayList<>(extras.keySet())) {
+            Object value = extras.get(key);
+            if (value instanceof Bitmap) {
+                extras.putParcelable(key, convert((Bitmap) value));
+            } else if (value instanceof Bitmap[]) {
+                Bitmap[] bitmaps = ((Bitmap[]) value).clone();
+                for (int i = 0; i < bitmaps.length; i++) {
+                    bitmaps[i] = convert(bitmaps[i]);
+                }
+                extras.putParcelableArray(key, bitmaps);
+            }
+        }
+    }
+
+    /**
+     * Returns a hardware copy of the bitmap shared with other callers that passed the same
+     * content, or the bitmap itself if the cache is disabled or the bitmap cannot be converted.
+     * Reads the pixels of the bitmap, so it must not be called on the main thread.
+     */
+    public Bitmap convert(Bitmap bitmap) {
+        if (!canConvert(bitmap)) {
+            return bitmap;
+        }
+        synchronized (this) {
+            Bitmap converted = mConverted.get(bitmap);
+            if (converted != null) {
+                return converted;
+            }
+        }
+        Key key = new Key(bitmap);
+        Bitmap candidate;
+        synchronized (this) {
+            WeakReference<Bitmap> ref = mByContent.get(key);
+            candidate = ref == null ? null : ref.get();
+            if (ref != null && candidate == null) {
+                mByContent.remove(key);
+            }
+        }
+        // Equal hashes are only a hint, different content must never share a copy.
+        boolean shared = candidate != null && candidate.sameAs(bitmap);
+        Bitmap converted = shared ? candidate : bitmap.copy(Bitmap.Config.HARDWARE, false);
+        synchronized (this) {
+            if (converted == null) {
+                mFailureCount++;
+                return bitmap;
+            }
+            if (shared) {
+                mSharedCount++;
+            } else {
+                mConversionCount++;
+                pruneLocked();
+                mByContent.put(key, new WeakReference<>(converted));
+            }
+            mConverted.put(bitmap, converted);
+        }
+        return converted;
+    }
+
+    private void pruneLocked() {
+        for (int i = mByContent.size() - 1; i >= 0; i--) {
+            if (mByContent.valueAt(i).get() == null) {
+                mByContent.removeAt(i);
+            }
+        }
+    }
+
+    private boolean canConvert(Bitmap bitmap) {
+        return mEnabled
+                && bitmap != null
+                && !bitmap.isRecycled()
+                && bitmap.getConfig() != Bitmap.Config.HARDWARE;
+    }
+
+    public static void dump(PrintWriter pw, String prefix) {
+        HardwareBitmapCache instance;
+        synchronized (HardwareBitmapCache.class) {
+            instance = sInstance;
+        }
+        pw.println(prefix + "HardwareBitmapCache:");
+        if (instance != null) {
+            instance.dumpStats(pw, prefix);
+        }
+    }
+
+    private synchronized void dumpStats(PrintWriter pw, String prefix) {
+        pruneLocked();
+        int live = mByContent.size();
+        long bytes = 0;
+        for (int i = 0; i < live; i++) {
+            Bitmap bitmap = mByContent.valueAt(i).get();
+            if (bitmap != null) {
+                bytes += bitmap.getAllocationByteCount();
+            }
+        }
+        long sourceBytes = 0;
+        for (Map.Entry<Bitmap, Bitmap> entry : mConverted.entrySet()) {
+            if (entry.getKey() != null) {
+                sourceBytes += entry.getKey().getAllocationByteCount();
+            }
+        }
+        pw.println(
+                prefix
+                        + "  enabled="
+                        + mEnabled
+                        + " bitmaps="
+                        + live
+                        + " hardwareBytes="
+                        + bytes
+                        + " sourceBytes="
+                        + sourceBytes);
+        pw.println(
+                prefix
+                        + "  conversions="
+                        + mConversionCount
+                        + " shared="
+                        + mSharedCount
+                        + " failures="
+                        + mFailureCount);
+    }
+
+    /** Identifies bitmap content by its size and a hash of its pixels. */
+    private static final class Key {
+        private final int mWidth;
+        private final int mHeight;
+        private final long mHash;
+
+        Key(Bitmap bitmap) {
+            mWidth = bitmap.getWidth();
+            mHeight = bitmap.getHeight();
+            int[] row = new int[mWidth];
+            long hash = 1125899906842597L;
+            for (int y = 0; y < mHeight; y++) {
+                bitmap.getPixels(row, 0, mWidth, 0, y, mWidth, 1);
+                for (int pixel : row) {
+                    hash = 31 * hash + pixel;
+                }
+            }
+            mHash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) obj;
+            return mWidth == key.mWidth && mHeight == key.mHeight && mHash == key.mHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mWidth, mHeight, mHash);
+        }
+    }
+}
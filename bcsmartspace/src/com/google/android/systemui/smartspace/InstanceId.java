@@ -1,25 +1,80 @@
 package com.google.android.systemui.smartspace;
 
 import android.app.smartspace.SmartspaceTarget;
+import android.util.ArraySet;
+import android.util.SparseIntArray;
 
-import java.util.UUID;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Derives the instance ids logged for smartspace targets. Ids only depend on the target id, or
+ * its creation time if it has none, so the same target always logs the same id. Hashing the id
+ * is cheap enough to be done on every call, collisions are only tracked for a sample of them.
+ */
 public class InstanceId {
+    // Limits the memory spent on collision tracking, later keys are no longer counted.
+    private static final int MAX_TRACKED_KEYS = 1024;
+    // Targets are rebound often with the same ids, so a sample still sees most keys.
+    private static final int TRACK_SAMPLE_INTERVAL = 16;
+
+    private static final Object sLock = new Object();
+    private static final ArraySet<String> sTrackedKeys = new ArraySet<>();
+    private static final SparseIntArray sKeysPerId = new SparseIntArray();
+    private static int sCollisionCount = 0;
+    private static final AtomicInteger sCreateCount = new AtomicInteger();
+
     public static int create(SmartspaceTarget smartspaceTarget) {
         if (smartspaceTarget == null) {
-            return SmallHash.hash(UUID.randomUUID().toString());
+            return create("");
         }
         String smartspaceTargetId = smartspaceTarget.getSmartspaceTargetId();
-        if (smartspaceTargetId != null && !smartspaceTargetId.isEmpty()) {
-            return SmallHash.hash(smartspaceTargetId);
+        if (smartspaceTargetId == null || smartspaceTargetId.isEmpty()) {
+            smartspaceTargetId = String.valueOf(smartspaceTarget.getCreationTimeMillis());
         }
-        return SmallHash.hash(String.valueOf(smartspaceTarget.getCreationTimeMillis()));
+        return create(smartspaceTargetId);
     }
 
     public static int create(String str) {
-        if (str != null && !str.isEmpty()) {
-            return SmallHash.hash(str);
+        if (str == null) {
+            str = "";
+        }
+        int id = SmallHash.hash(str);
+        if (sCreateCount.getAndIncrement() % TRACK_SAMPLE_INTERVAL == 0) {
+            synchronized (sLock) {
+                track(str, id);
+            }
+        }
+        return id;
+    }
+
+    private static void track(String str, int id) {
+        if (sTrackedKeys.size() >= MAX_TRACKED_KEYS || !sTrackedKeys.add(str)) {
+            return;
+        }
+        int count = sKeysPerId.get(id);
+        if (count > 0) {
+            sCollisionCount++;
+        }
+        sKeysPerId.put(id, count + 1);
+    }
+
+    public static void dump(PrintWriter pw, String prefix) {
+        synchronized (sLock) {
+            int keys = sTrackedKeys.size();
+            pw.println(prefix + "InstanceId:");
+            pw.println(
+                    prefix
+                            + "  creates="
+                            + sCreateCount.get()
+                            + " keys="
+                            + keys
+                            + " ids="
+                            + sKeysPerId.size()
+                            + " collisions="
+                            + sCollisionCount
+                            + " collisionRate="
+                            + (keys == 0 ? 0.0f : sCollisionCount / (float) keys));
         }
-        return SmallHash.hash(UUID.randomUUID().toString());
     }
 }
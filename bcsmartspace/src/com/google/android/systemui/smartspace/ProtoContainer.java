@@ -0,0 +1,373 @@
+package com.google.android.systemui.smartspace;
+
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Single file holding many named records for {@link ProtoStore}, so restoring several cached
+ * messages costs one sequential read instead of one file per message.
+ *
+ * <p>The file starts with a magic number and a format version, followed by an append-only log
+ * of records: key length, UTF-8 key, payload length (-1 for a deletion), payload and a CRC32 of
+ * the key and payload. The log is scanned once when first used to build an in-memory index of
+ * payload offsets, payloads are then read per key or all at once with {@link #readAll}. Writes
+ * are appended in batches with a single sync each. Superseded records are dropped by compaction
+ * once they make up most of the file. A torn write at the end of the log fails its CRC and is
+ * discarded.
+ */
+public class ProtoContainer {
+    private static final String TAG = "ProtoContainer";
+
+    private static final int MAGIC = 0x53535043; // "SSPC"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TOMBSTONE = -1;
+    private static final int COMPACTION_MIN_DEAD_BYTES = 32 * 1024;
+
+    private final AtomicFile mAtomicFile;
+    private final ArrayMap<String, Record> mIndex = new ArrayMap<>();
+    private boolean mIndexLoaded = false;
+    private long mEnd = 0;
+    private long mLiveBytes = 0;
+    private long mDeadBytes = 0;
+    private int mCompactionCount = 0;
+
+    public ProtoContainer(File file) {
+        mAtomicFile = new AtomicFile(file);
+    }
+
+    /** Returns the payload stored under the given key, or null if there is none. */
+    public synchronized byte[] read(String key) throws IOException {
+        ensureIndexLoaded();
+        Record record = mIndex.get(key);
+        if (record == null) {
+            return null;
+        }
+        byte[] payload = new byte[record.length];
+        try (FileInputStream fileInputStream = new FileInputStream(mAtomicFile.getBaseFile());
+                FileChannel channel = fileInputStream.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            long position = record.offset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("record for " + key + " is truncated");
+                }
+                position += read;
+            }
+        }
+        if (crc(key.getBytes(StandardCharsets.UTF_8), payload) != record.crc) {
+            throw new IOException("record for " + key + " is corrupt");
+        }
+        return payload;
+    }
+
+    /**
+     * Returns the payloads of all keys, read in one pass over the file. Records that fail their
+     * CRC are left out.
+     */
+    public synchronized ArrayMap<String, byte[]> readAll() throws IOException {
+        ensureIndexLoaded();
+        ArrayMap<String, byte[]> payloads = new ArrayMap<>(mIndex.size());
+        if (mIndex.isEmpty()) {
+            return payloads;
+        }
+        try (FileInputStream fileInputStream = new FileInputStream(mAtomicFile.getBaseFile());
+                FileChannel channel = fileInputStream.getChannel()) {
+            long size = Math.min(channel.size(), mEnd);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int i = 0; i < mIndex.size(); i++) {
+                String key = mIndex.keyAt(i);
+                Record record = mIndex.valueAt(i);
+                if (record.offset + record.length > size) {
+                    Log.w(TAG, "record for " + key + " is truncated");
+                    continue;
+                }
+                byte[] payload = new byte[record.length];
+                buffer.position((int) record.offset);
+                buffer.get(payload);
+                if (crc(key.getBytes(StandardCharsets.UTF_8), payload) != record.crc) {
+                    Log.w(TAG, "record for " + key + " is corrupt");
+                    continue;
+                }
+                payloads.put(key, payload);
+            }
+        }
+        return payloads;
+    }
+
+    /** Appends a record for the given key, a null payload deletes the key. */
+    public void write(String key, byte[] payload) throws IOException {
+        ArrayMap<String, byte[]> records = new ArrayMap<>(1);
+        records.put(key, payload);
+        writeAll(records);
+    }
+
+    /**
+     * Appends a record for each of the given keys and syncs the file once for all of them, a null
+     * payload deletes its key.
+     */
+    public synchronized void writeAll(ArrayMap<String, byte[]> records) throws IOException {
+        ensureIndexLoaded();
+        int count = records.size();
+        byte[][] keyBytes = new byte[count][];
+        int batchSize = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] payload = records.valueAt(i);
+            if (payload == null && !mIndex.containsKey(records.keyAt(i))) {
+                continue;
+            }
+            keyBytes[i] = records.keyAt(i).getBytes(StandardCharsets.UTF_8);
+            batchSize += recordSize(keyBytes[i].length, payload == null ? 0 : payload.length);
+        }
+        if (batchSize == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(batchSize);
+        int[] crcs = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (keyBytes[i] == null) {
+                continue;
+            }
+            byte[] payload = records.valueAt(i);
+            buffer.putInt(keyBytes[i].length);
+            buffer.put(keyBytes[i]);
+            buffer.putInt(payload == null ? TOMBSTONE : payload.length);
+            if (payload != null) {
+                buffer.put(payload);
+            }
+            crcs[i] = crc(keyBytes[i], payload);
+            buffer.putInt(crcs[i]);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(mAtomicFile.getBaseFile(), "rw")) {
+            // Drop anything after the last valid record, e.g. a torn append.
+            if (file.length() != mEnd) {
+                file.setLength(mEnd);
+            }
+            file.seek(mEnd);
+            file.write(buffer.array());
+            file.getFD().sync();
+        }
+        for (int i = 0; i < count; i++) {
+            if (keyBytes[i] == null) {
+                continue;
+            }
+            byte[] payload = records.valueAt(i);
+            int payloadLength = payload == null ? 0 : payload.length;
+            int recordSize = recordSize(keyBytes[i].length, payloadLength);
+            long payloadOffset = mEnd + 4 + keyBytes[i].length + 4;
+            mEnd += recordSize;
+            applyRecord(
+                    records.keyAt(i),
+                    payload == null
+                            ? null
+                            : new Record(payloadOffset, payloadLength, crcs[i], recordSize),
+                    recordSize);
+        }
+    }
+
+    /** Rewrites the file without superseded records if they take up enough space. */
+    public synchronized boolean maybeCompact() {
+        if (mDeadBytes < COMPACTION_MIN_DEAD_BYTES || mDeadBytes < mLiveBytes) {
+            return false;
+        }
+        try {
+            compact();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "unable to compact " + mAtomicFile.getBaseFile(), e);
+            return false;
+        }
+    }
+
+    public synchronized void compact() throws IOException {
+        ArrayMap<String, byte[]> live = readAll();
+        FileOutputStream fileOutputStream = null;
+        ArrayMap<String, Record> index = new ArrayMap<>(live.size());
+        long end = HEADER_SIZE;
+        try {
+            fileOutputStream = mAtomicFile.startWrite();
+            fileOutputStream.write(header());
+            for (int i = 0; i < live.size(); i++) {
+                String key = live.keyAt(i);
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                byte[] payload = live.valueAt(i);
+                int recordSize = recordSize(keyBytes.length, payload.length);
+                int crc = crc(keyBytes, payload);
+                ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+                buffer.putInt(keyBytes.length);
+                buffer.put(keyBytes);
+                buffer.putInt(payload.length);
+                buffer.put(payload);
+                buffer.putInt(crc);
+                fileOutputStream.write(buffer.array());
+                index.put(
+                        key,
+                        new Record(end + 4 + keyBytes.length + 4, payload.length, crc,
+                                recordSize));
+                end += recordSize;
+            }
+            mAtomicFile.finishWrite(fileOutputStream);
+        } catch (IOException e) {
+            if (fileOutputStream != null) {
+                mAtomicFile.failWrite(fileOutputStream);
+            }
+            throw e;
+        }
+        mIndex.clear();
+        mIndex.putAll(index);
+        mEnd = end;
+        mLiveBytes = end - HEADER_SIZE;
+        mDeadBytes = 0;
+        mCompactionCount++;
+    }
+
+    private void ensureIndexLoaded() throws IOException {
+        if (mIndexLoaded) {
+            return;
+        }
+        try (FileInputStream fileInputStream = mAtomicFile.openRead();
+                FileChannel channel = fileInputStream.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() >= HEADER_SIZE
+                    && buffer.getInt() == MAGIC
+                    && buffer.getInt() == VERSION) {
+                scan(buffer);
+                mIndexLoaded = true;
+                return;
+            }
+            Log.w(TAG, "discarding container with unknown format " + mAtomicFile.getBaseFile());
+        } catch (FileNotFoundException unused) {
+            // Nothing stored yet.
+        }
+        reset();
+        mIndexLoaded = true;
+    }
+
+    private void scan(ByteBuffer buffer) {
+        mEnd = HEADER_SIZE;
+        while (buffer.remaining() >= 8) {
+            int start = buffer.position();
+            int keyLength = buffer.getInt();
+            if (keyLength <= 0 || keyLength > buffer.remaining() - 8) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            int payloadLength = buffer.getInt();
+            boolean tombstone = payloadLength == TOMBSTONE;
+            int length = tombstone ? 0 : payloadLength;
+            if (length < 0 || length > buffer.remaining() - 4) {
+                break;
+            }
+            int payloadOffset = buffer.position();
+            CRC32 crc32 = new CRC32();
+            crc32.update(keyBytes);
+            ByteBuffer payload = buffer.slice();
+            payload.limit(length);
+            crc32.update(payload);
+            buffer.position(payloadOffset + length);
+            int crc = buffer.getInt();
+            if ((int) crc32.getValue() != crc) {
+                Log.w(TAG, "dropping corrupt records after offset " + start);
+                break;
+            }
+            int recordSize = buffer.position() - start;
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            applyRecord(
+                    key,
+                    tombstone ? null : new Record(payloadOffset, length, crc, recordSize),
+                    recordSize);
+            mEnd = buffer.position();
+        }
+    }
+
+    private void applyRecord(String key, Record record, int recordSize) {
+        Record previous = record == null ? mIndex.remove(key) : mIndex.put(key, record);
+        if (previous != null) {
+            mLiveBytes -= previous.size;
+            mDeadBytes += previous.size;
+        }
+        if (record == null) {
+            mDeadBytes += recordSize;
+        } else {
+            mLiveBytes += recordSize;
+        }
+    }
+
+    private void reset() throws IOException {
+        mIndex.clear();
+        mLiveBytes = 0;
+        mDeadBytes = 0;
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = mAtomicFile.startWrite();
+            fileOutputStream.write(header());
+            mAtomicFile.finishWrite(fileOutputStream);
+        } catch (IOException e) {
+            if (fileOutputStream != null) {
+                mAtomicFile.failWrite(fileOutputStream);
+            }
+            throw e;
+        }
+        mEnd = HEADER_SIZE;
+    }
+
+    private static byte[] header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    private static int recordSize(int keyLength, int payloadLength) {
+        return 4 + keyLength + 4 + payloadLength + 4;
+    }
+
+    private static int crc(byte[] keyBytes, byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(keyBytes);
+        if (payload != null) {
+            crc32.update(payload);
+        }
+        return (int) crc32.getValue();
+    }
+
+    public synchronized String toString() {
+        return "ProtoContainer{file="
+                + mAtomicFile.getBaseFile().getName()
+                + ", records="
+                + mIndex.size()
+                + ", liveBytes="
+                + mLiveBytes
+                + ", deadBytes="
+                + mDeadBytes
+                + ", compactions="
+                + mCompactionCount
+                + '}';
+    }
+
+    private static final class Record {
+        final long offset;
+        final int length;
+        final int crc;
+        final int size;
+
+        Record(long offset, int length, int crc, int size) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+}
@@ -1,61 +1,193 @@
 package com.google.android.systemui.smartspace;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
 import android.util.Log;
 
+import com.google.protobuf.nano.CodedInputByteBufferNano;
 import com.google.protobuf.nano.MessageNano;
 
-import java.io.File;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 
+/**
+ * Caches messages as records of a single {@link ProtoContainer} file shared by all stores of the
+ * process. The first load reads every record in one pass, and writes are batched on a background
+ * thread. Messages left in per-name files by older versions are moved into the container the
+ * first time they are loaded.
+ */
 public class ProtoStore {
+    private static final String CONTAINER_NAME = "smartspace_protos";
+    // Legacy files at least this large are mapped instead of read through the channel.
+    private static final int MMAP_THRESHOLD_BYTES = 16 * 1024;
+    private static final long WRITE_RETRY_DELAY_MS = 5000;
+
+    private static Handler sWriterHandler;
+    private static ProtoContainer sContainer;
+    private static final Object sPreloadLock = new Object();
+    // Records read by the first load, each is handed out once and dropped when it is replaced.
+    private static ArrayMap<String, byte[]> sPreloaded = null;
+    private static final Object sStatsLock = new Object();
+    private static int sLoadCount = 0;
+    private static int sMappedLoadCount = 0;
+    private static long sLoadedBytes = 0;
+    private static long sMaxLoadedBytes = 0;
+    private static long sTotalLoadNanos = 0;
+    private static long sMaxLoadNanos = 0;
+
     private final Context mContext;
+    private final ProtoContainer mContainer;
+    private final Object mWriteLock = new Object();
+    private final Object mPendingLock = new Object();
+    // A null value means the record has to be deleted.
+    private final ArrayMap<String, byte[]> mPendingWrites = new ArrayMap<>();
+    // Legacy files moved into the container, deleted once their record is on disk.
+    private final ArrayMap<String, AtomicFile> mPendingMigrations = new ArrayMap<>();
+    private final Runnable mWriteRunnable = this::writePending;
+    private boolean mWriteScheduled = false;
 
     public ProtoStore(Context context) {
         mContext = context.getApplicationContext();
+        mContainer = getContainer(mContext);
+    }
+
+    private static synchronized ProtoContainer getContainer(Context context) {
+        if (sContainer == null) {
+            sContainer = new ProtoContainer(context.getFileStreamPath(CONTAINER_NAME));
+        }
+        return sContainer;
     }
 
+    private static synchronized Handler getWriterHandler() {
+        if (sWriterHandler == null) {
+            HandlerThread handlerThread =
+                    new HandlerThread("ProtoStore", Process.THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+            sWriterHandler = new Handler(handlerThread.getLooper());
+        }
+        return sWriterHandler;
+    }
+
+    /**
+     * Schedules the message to be written under the given name, or the record to be deleted if
+     * the message is null. The message is serialized right away, the write itself happens on a
+     * background thread, and repeated stores to the same name before it runs only write the
+     * latest message.
+     */
     public void store(MessageNano messageNano, String str) {
-        try {
-            FileOutputStream openFileOutput = mContext.openFileOutput(str, 0);
-            if (messageNano != null) {
-                openFileOutput.write(MessageNano.toByteArray(messageNano));
-            } else {
-                Log.d("ProtoStore", "deleting " + str);
-                mContext.deleteFile(str);
+        store(messageNano == null ? null : MessageNano.toByteArray(messageNano), str);
+    }
+
+    private void store(byte[] bytes, String str) {
+        synchronized (mPendingLock) {
+            mPendingWrites.put(str, bytes);
+            if (mWriteScheduled) {
+                return;
             }
-            if (openFileOutput == null) {
+            mWriteScheduled = true;
+        }
+        getWriterHandler().post(mWriteRunnable);
+    }
+
+    /** Writes all pending stores on the calling thread, blocking until they are on disk. */
+    public void flush() {
+        writePending();
+    }
+
+    private void writePending() {
+        synchronized (mWriteLock) {
+            ArrayMap<String, byte[]> writes;
+            synchronized (mPendingLock) {
+                mWriteScheduled = false;
+                if (mPendingWrites.isEmpty()) {
+                    return;
+                }
+                writes = new ArrayMap<>(mPendingWrites);
+            }
+            try {
+                mContainer.writeAll(writes);
+            } catch (IOException e) {
+                // Keep the batch pending so load() still sees it, and try again later.
+                Log.e("ProtoStore", "unable to write records", e);
+                synchronized (mPendingLock) {
+                    if (mWriteScheduled) {
+                        return;
+                    }
+                    mWriteScheduled = true;
+                }
+                getWriterHandler().postDelayed(mWriteRunnable, WRITE_RETRY_DELAY_MS);
                 return;
             }
-            openFileOutput.close();
-        } catch (FileNotFoundException unused) {
-            Log.d("ProtoStore", "file does not exist");
-        } catch (Exception e) {
-            Log.e("ProtoStore", "unable to write file", e);
+            if (mContainer.maybeCompact()) {
+                Log.d("ProtoStore", "compacted " + mContainer);
+            }
+            // Preloaded records may predate the batch, drop them before the pending entries.
+            synchronized (sPreloadLock) {
+                if (sPreloaded != null) {
+                    sPreloaded.removeAll(writes.keySet());
+                }
+            }
+            // Keep entries visible to load() until they are on disk, and keep the ones that were
+            // replaced while writing for the next pass.
+            ArrayList<AtomicFile> migrated = null;
+            synchronized (mPendingLock) {
+                for (int i = 0; i < writes.size(); i++) {
+                    String key = writes.keyAt(i);
+                    int index = mPendingWrites.indexOfKey(key);
+                    if (index >= 0 && mPendingWrites.valueAt(index) == writes.valueAt(i)) {
+                        mPendingWrites.removeAt(index);
+                    }
+                    AtomicFile atomicFile = mPendingMigrations.remove(key);
+                    if (atomicFile != null) {
+                        if (migrated == null) {
+                            migrated = new ArrayList<>();
+                        }
+                        migrated.add(atomicFile);
+                    }
+                }
+            }
+            if (migrated != null) {
+                for (AtomicFile atomicFile : migrated) {
+                    atomicFile.delete();
+                }
+            }
         }
     }
 
     public <T extends MessageNano> boolean load(String str, T t) {
-        File fileStreamPath = mContext.getFileStreamPath(str);
+        byte[] pending;
+        synchronized (mPendingLock) {
+            if (mPendingWrites.containsKey(str)) {
+                pending = mPendingWrites.get(str);
+                if (pending == null) {
+                    Log.d("ProtoStore", "no cached data");
+                    return false;
+                }
+            } else {
+                pending = null;
+            }
+        }
         try {
-            FileInputStream fileInputStream = new FileInputStream(fileStreamPath);
-            try {
-                int length = (int) fileStreamPath.length();
-                byte[] bArr = new byte[length];
-                fileInputStream.read(bArr, 0, length);
-                MessageNano.mergeFrom(t, bArr);
-                fileInputStream.close();
+            if (pending != null) {
+                MessageNano.mergeFrom(t, pending);
                 return true;
-            } catch (Throwable th) {
-                try {
-                    fileInputStream.close();
-                } catch (Throwable th2) {
-                    th.addSuppressed(th2);
-                }
-                throw th;
             }
+            if (readFrom(mContainer, str, t)) {
+                return true;
+            }
+            return migrate(str, t);
         } catch (FileNotFoundException unused) {
             Log.d("ProtoStore", "no cached data");
             return false;
@@ -64,4 +196,117 @@ public class ProtoStore {
             return false;
         }
     }
+
+    /** Moves a message stored in its own file by an older version into the container. */
+    private <T extends MessageNano> boolean migrate(String str, T t) throws IOException {
+        AtomicFile atomicFile = new AtomicFile(mContext.getFileStreamPath(str));
+        if (!atomicFile.exists()) {
+            Log.d("ProtoStore", "no cached data");
+            return false;
+        }
+        byte[] bArr = readFrom(atomicFile, t);
+        // The legacy file is only deleted once the record is in the container.
+        synchronized (mPendingLock) {
+            mPendingMigrations.put(str, atomicFile);
+        }
+        store(bArr, str);
+        return true;
+    }
+
+    private static <T extends MessageNano> byte[] readFrom(AtomicFile atomicFile, T t)
+            throws IOException {
+        long start = SystemClock.elapsedRealtimeNanos();
+        int length;
+        boolean mapped;
+        byte[] bArr;
+        try (FileInputStream fileInputStream = atomicFile.openRead();
+                FileChannel channel = fileInputStream.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file too large: " + size);
+            }
+            length = (int) size;
+            // The nano runtime only parses arrays, so the data is copied exactly once into an
+            // array of the right size, straight from the mapping for large files.
+            bArr = new byte[length];
+            mapped = length >= MMAP_THRESHOLD_BYTES;
+            if (mapped) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                buffer.get(bArr);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(bArr);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException(
+                                "expected " + length + " bytes, read " + buffer.position());
+                    }
+                }
+            }
+            parse(bArr, t);
+        }
+        recordLoad(length, mapped, SystemClock.elapsedRealtimeNanos() - start);
+        return bArr;
+    }
+
+    private static <T extends MessageNano> boolean readFrom(
+            ProtoContainer container, String str, T t) throws IOException {
+        long start = SystemClock.elapsedRealtimeNanos();
+        byte[] bArr = takePreloaded(container, str);
+        if (bArr == null) {
+            bArr = container.read(str);
+        }
+        if (bArr == null) {
+            return false;
+        }
+        parse(bArr, t);
+        recordLoad(bArr.length, false, SystemClock.elapsedRealtimeNanos() - start);
+        return true;
+    }
+
+    private static byte[] takePreloaded(ProtoContainer container, String str) throws IOException {
+        synchronized (sPreloadLock) {
+            if (sPreloaded == null) {
+                sPreloaded = container.readAll();
+            }
+            return sPreloaded.remove(str);
+        }
+    }
+
+    private static <T extends MessageNano> void parse(byte[] bArr, T t) throws IOException {
+        CodedInputByteBufferNano input = CodedInputByteBufferNano.newInstance(bArr, 0, bArr.length);
+        t.mergeFrom(input);
+        input.checkLastTagWas(0);
+    }
+
+    private static void recordLoad(int length, boolean mapped, long nanos) {
+        synchronized (sStatsLock) {
+            sLoadCount++;
+            if (mapped) {
+                sMappedLoadCount++;
+            }
+            sLoadedBytes += length;
+            sMaxLoadedBytes = Math.max(sMaxLoadedBytes, length);
+            sTotalLoadNanos += nanos;
+            sMaxLoadNanos = Math.max(sMaxLoadNanos, nanos);
+        }
+    }
+
+    public static void dump(PrintWriter pw, String prefix) {
+        synchronized (sStatsLock) {
+            pw.println(prefix + "ProtoStore:");
+            pw.println(prefix + "  loads=" + sLoadCount + " mapped=" + sMappedLoadCount);
+            pw.println(
+                    prefix
+                            + "  loadedBytes="
+                            + sLoadedBytes
+                            + " maxBytes="
+                            + sMaxLoadedBytes);
+            pw.println(
+                    prefix
+                            + "  avgLoadUs="
+                            + (sLoadCount == 0 ? 0 : sTotalLoadNanos / sLoadCount / 1000)
+                            + " maxLoadUs="
+                            + sMaxLoadNanos / 1000);
+        }
+    }
 }
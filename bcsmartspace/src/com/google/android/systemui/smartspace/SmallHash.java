@@ -3,11 +3,31 @@ package com.google.android.systemui.smartspace;
 import java.util.Objects;
 
 public final class SmallHash {
+    /** Number of bits the logged instance ids are folded to. */
+    public static final int BITS = 13;
+
     public static int hash(String str) {
-        return hash(Objects.hashCode(str));
+        return fold(hash64(str));
     }
 
     public static int hash(int i) {
         return Math.abs(Math.floorMod(i, 8192));
     }
+
+    /** 64-bit FNV-1a over the UTF-16 chars of the string, mixed so every bit avalanches. */
+    public static long hash64(String str) {
+        long h = 0xcbf29ce484222325L;
+        String s = Objects.toString(str, "");
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** Keeps the top bits of a mixed 64-bit hash, they are the best distributed ones. */
+    public static int fold(long h) {
+        return (int) (h >>> (64 - BITS));
+    }
 }
@@ -0,0 +1,54 @@
+package com.google.android.systemui.smartspace;
+
+import android.app.smartspace.SmartspaceTarget;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of smartspace targets published by {@link BcSmartspaceDataProvider}. Every
+ * published list carries a generation that increases with each update, so listeners can tell
+ * whether they have already applied a list without walking it, and can keep holding on to it
+ * after the provider has moved on.
+ */
+public final class SmartspaceTargetSnapshot extends AbstractList<SmartspaceTarget>
+        implements RandomAccess {
+    public static final long NO_GENERATION = -1;
+    public static final SmartspaceTargetSnapshot EMPTY =
+            new SmartspaceTargetSnapshot(new SmartspaceTarget[0], 0);
+
+    private final SmartspaceTarget[] mTargets;
+    private final long mGeneration;
+
+    private SmartspaceTargetSnapshot(SmartspaceTarget[] targets, long generation) {
+        mTargets = targets;
+        mGeneration = generation;
+    }
+
+    public static SmartspaceTargetSnapshot of(List<SmartspaceTarget> targets, long generation) {
+        return new SmartspaceTargetSnapshot(
+                targets.toArray(new SmartspaceTarget[targets.size()]), generation);
+    }
+
+    /** Returns the generation of the list if it is a snapshot, or {@link #NO_GENERATION}. */
+    public static long generationOf(List<?> list) {
+        return list instanceof SmartspaceTargetSnapshot
+                ? ((SmartspaceTargetSnapshot) list).mGeneration
+                : NO_GENERATION;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    @Override
+    public SmartspaceTarget get(int i) {
+        return mTargets[i];
+    }
+
+    @Override
+    public int size() {
+        return mTargets.length;
+    }
+}
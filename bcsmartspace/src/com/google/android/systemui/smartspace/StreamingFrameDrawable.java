@@ -0,0 +1,320 @@
+package com.google.android.systemui.smartspace;
+
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a doorbell frame sequence while only keeping a few decoded frames around. Frames are
+ * decoded one at a time on a background executor into a small ring buffer ahead of the frame
+ * being shown, instead of decoding every frame up front like an AnimationDrawable of all frames
+ * would. Playback pauses while the drawable is not visible or the device is dozing. Must be used
+ * from the main thread.
+ */
+public class StreamingFrameDrawable extends Drawable implements Animatable, Runnable {
+    private static final int BUFFER_SIZE = 3;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Uri> mUris;
+    private final ContentResolver mContentResolver;
+    private final Resources mResources;
+    private final int mHeightInPx;
+    private final int mFrameDurationMs;
+    private final ExecutorService mExecutor;
+    private final DoorbellFrameCache mFrameCache;
+    // Sequences this short are decoded once and kept, each frame in its own slot.
+    private final boolean mResident;
+    private final Drawable[] mSlots = new Drawable[BUFFER_SIZE];
+    // Last frame that decoded, stays on screen while frames that failed to decode are skipped.
+    private Drawable mShownDrawable;
+    private int mShownSeq = 0;
+    private int mDecodedSeq = 0;
+    private int mGeneration = 0;
+    private Future<?> mDecoding;
+    private boolean mStarted = false;
+    private boolean mDozing = false;
+    private boolean mScheduled = false;
+    private int mAlpha = 255;
+    private ColorFilter mColorFilter;
+    // Size of the first decoded frame, reported so ImageView can apply its scale type.
+    private int mIntrinsicWidth = -1;
+    private int mIntrinsicHeight = -1;
+    private Runnable mIntrinsicSizeListener;
+
+    public StreamingFrameDrawable(
+            List<Uri> uris,
+            ContentResolver contentResolver,
+            Resources resources,
+            int heightInPx,
+            int frameDurationMs,
+            ExecutorService executor,
+            DoorbellFrameCache frameCache) {
+        mUris = uris;
+        mContentResolver = contentResolver;
+        mResources = resources;
+        mHeightInPx = heightInPx;
+        mFrameDurationMs = Math.max(1, frameDurationMs);
+        mExecutor = executor;
+        mFrameCache = frameCache;
+        mResident = uris.size() <= BUFFER_SIZE;
+        decodeAhead();
+    }
+
+    private int slotOf(int seq) {
+        return mResident ? seq % mUris.size() : seq % BUFFER_SIZE;
+    }
+
+    private boolean isDecoded(int seq) {
+        return mResident ? seq % mUris.size() < mDecodedSeq : seq < mDecodedSeq;
+    }
+
+    private void decodeAhead() {
+        if (mDecoding != null || mUris.isEmpty()) {
+            return;
+        }
+        int limit = mResident ? mUris.size() : mShownSeq + BUFFER_SIZE;
+        // Only the first frame is needed until playback starts.
+        if (!isRunning() && mDecodedSeq > mShownSeq) {
+            return;
+        }
+        if (mDecodedSeq >= limit) {
+            return;
+        }
+        final int seq = mDecodedSeq;
+        final Uri uri = mUris.get(seq % mUris.size());
+        Bitmap cached = mFrameCache.get(uri, mHeightInPx);
+        if (cached != null) {
+            onFrameDecoded(seq, new BitmapDrawable(mResources, cached));
+            return;
+        }
+        final int generation = mGeneration;
+        mDecoding =
+                mExecutor.submit(
+                        () -> {
+                            final Drawable drawable =
+                                    BcSmartspaceCardDoorbell.decodeFrame(
+                                            mContentResolver, uri, mHeightInPx, mFrameCache);
+                            mMainHandler.post(
+                                    () -> {
+                                        if (generation != mGeneration) {
+                                            return;
+                                        }
+                                        mDecoding = null;
+                                        onFrameDecoded(seq, drawable);
+                                    });
+                        });
+    }
+
+    private void onFrameDecoded(int seq, Drawable drawable) {
+        // A frame that failed to decode leaves its slot empty, and mShownDrawable keeps the
+        // previous frame on screen when playback reaches it.
+        if (drawable != null) {
+            drawable.setBounds(getBounds());
+            drawable.setAlpha(mAlpha);
+            drawable.setColorFilter(mColorFilter);
+            if (seq == mShownSeq) {
+                showFrame(drawable);
+            }
+        }
+        mSlots[slotOf(seq)] = drawable;
+        mDecodedSeq = seq + 1;
+        decodeAhead();
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+        if (!isRunning()) {
+            return;
+        }
+        int next = mShownSeq + 1;
+        if (isDecoded(next)) {
+            if (!mResident) {
+                mSlots[slotOf(mShownSeq)] = null;
+            }
+            mShownSeq = next;
+            Drawable drawable = mSlots[slotOf(next)];
+            if (drawable != null) {
+                showFrame(drawable);
+            }
+            decodeAhead();
+        }
+        scheduleNextFrame();
+    }
+
+    private void showFrame(Drawable drawable) {
+        mShownDrawable = drawable;
+        updateIntrinsicSize(drawable);
+        invalidateSelf();
+    }
+
+    private void updateIntrinsicSize(Drawable drawable) {
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (width == mIntrinsicWidth && height == mIntrinsicHeight) {
+            return;
+        }
+        mIntrinsicWidth = width;
+        mIntrinsicHeight = height;
+        invalidateSelf();
+        if (mIntrinsicSizeListener != null) {
+            mIntrinsicSizeListener.run();
+        }
+    }
+
+    /**
+     * Sets a listener run when the intrinsic size changes. Views only read the size when the
+     * drawable is set, so the listener should set it again.
+     */
+    public void setOnIntrinsicSizeChangedListener(Runnable runnable) {
+        mIntrinsicSizeListener = runnable;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicHeight;
+    }
+
+    private void scheduleNextFrame() {
+        if (mScheduled || !isRunning() || mUris.size() < 2) {
+            return;
+        }
+        mScheduled = true;
+        scheduleSelf(this, SystemClock.uptimeMillis() + mFrameDurationMs);
+    }
+
+    private void pause() {
+        if (mScheduled) {
+            mScheduled = false;
+            unscheduleSelf(this);
+        }
+    }
+
+    private void updateRunning() {
+        if (isRunning()) {
+            decodeAhead();
+            scheduleNextFrame();
+        } else {
+            pause();
+        }
+    }
+
+    @Override
+    public void start() {
+        mStarted = true;
+        updateRunning();
+    }
+
+    @Override
+    public void stop() {
+        mStarted = false;
+        updateRunning();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mStarted && isVisible() && !mDozing;
+    }
+
+    public void setDozing(boolean z) {
+        if (mDozing != z) {
+            mDozing = z;
+            updateRunning();
+        }
+    }
+
+    /** Stops playback and any decode in flight, and drops all decoded frames. */
+    public void release() {
+        mIntrinsicSizeListener = null;
+        mStarted = false;
+        pause();
+        mGeneration++;
+        if (mDecoding != null) {
+            mDecoding.cancel(true);
+            mDecoding = null;
+        }
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            mSlots[i] = null;
+        }
+        mShownDrawable = null;
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        updateRunning();
+        return changed;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (mShownDrawable != null) {
+            mShownDrawable.draw(canvas);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect rect) {
+        for (Drawable drawable : mSlots) {
+            if (drawable != null) {
+                drawable.setBounds(rect);
+            }
+        }
+        if (mShownDrawable != null) {
+            mShownDrawable.setBounds(rect);
+        }
+    }
+
+    @Override
+    public void setAlpha(int i) {
+        mAlpha = i;
+        for (Drawable drawable : mSlots) {
+            if (drawable != null) {
+                drawable.setAlpha(i);
+            }
+        }
+        if (mShownDrawable != null) {
+            mShownDrawable.setAlpha(i);
+        }
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mColorFilter = colorFilter;
+        for (Drawable drawable : mSlots) {
+            if (drawable != null) {
+                drawable.setColorFilter(colorFilter);
+            }
+        }
+        if (mShownDrawable != null) {
+            mShownDrawable.setColorFilter(colorFilter);
+        }
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
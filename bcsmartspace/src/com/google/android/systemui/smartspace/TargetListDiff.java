@@ -0,0 +1,129 @@
+package com.google.android.systemui.smartspace;
+
+import android.app.smartspace.SmartspaceTarget;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keyed diff between two lists of smartspace targets. Targets are matched on their smartspace
+ * target id together with the card feature type, so a card only needs to be recreated when it
+ * was inserted, removed or changed type, and only rebound when it moved or its content changed.
+ */
+public final class TargetListDiff {
+    public static final int NO_POSITION = -1;
+
+    private final int[] mOldToNew;
+    private final boolean[] mChanged;
+    private int mInsertCount;
+    private int mRemoveCount;
+    private int mMoveCount;
+    private int mChangeCount;
+
+    private TargetListDiff(int oldSize, int newSize) {
+        mOldToNew = new int[oldSize];
+        mChanged = new boolean[newSize];
+    }
+
+    public static TargetListDiff calculate(
+            List<SmartspaceTarget> oldTargets,
+            List<SmartspaceTarget> newTargets,
+            ToIntFunction<SmartspaceTarget> featureTypeResolver) {
+        final int oldSize = oldTargets.size();
+        final int newSize = newTargets.size();
+        final TargetListDiff diff = new TargetListDiff(oldSize, newSize);
+        final boolean[] matched = new boolean[newSize];
+        for (int i = 0; i < oldSize; i++) {
+            final SmartspaceTarget oldTarget = oldTargets.get(i);
+            final int oldFeatureType = featureTypeResolver.applyAsInt(oldTarget);
+            int newPosition = NO_POSITION;
+            // Prefer keeping the card where it is, then fall back to the first free match.
+            if (i < newSize
+                    && !matched[i]
+                    && isSameCard(
+                            oldTarget,
+                            oldFeatureType,
+                            newTargets.get(i),
+                            featureTypeResolver)) {
+                newPosition = i;
+            } else {
+                for (int j = 0; j < newSize; j++) {
+                    if (!matched[j]
+                            && isSameCard(
+                                    oldTarget,
+                                    oldFeatureType,
+                                    newTargets.get(j),
+                                    featureTypeResolver)) {
+                        newPosition = j;
+                        break;
+                    }
+                }
+            }
+            diff.mOldToNew[i] = newPosition;
+            if (newPosition == NO_POSITION) {
+                diff.mRemoveCount++;
+                continue;
+            }
+            matched[newPosition] = true;
+            if (newPosition != i) {
+                diff.mMoveCount++;
+            }
+            final SmartspaceTarget newTarget = newTargets.get(newPosition);
+            if (oldTarget != newTarget && !Objects.equals(oldTarget, newTarget)) {
+                diff.mChanged[newPosition] = true;
+                diff.mChangeCount++;
+            }
+        }
+        for (int j = 0; j < newSize; j++) {
+            if (!matched[j]) {
+                diff.mInsertCount++;
+            }
+        }
+        return diff;
+    }
+
+    private static boolean isSameCard(
+            SmartspaceTarget oldTarget,
+            int oldFeatureType,
+            SmartspaceTarget newTarget,
+            ToIntFunction<SmartspaceTarget> featureTypeResolver) {
+        return Objects.equals(
+                        oldTarget.getSmartspaceTargetId(), newTarget.getSmartspaceTargetId())
+                && oldFeatureType == featureTypeResolver.applyAsInt(newTarget);
+    }
+
+    /** Returns the position of the old item in the new list, or {@link #NO_POSITION}. */
+    public int getNewPosition(int oldPosition) {
+        if (oldPosition < 0 || oldPosition >= mOldToNew.length) {
+            return NO_POSITION;
+        }
+        return mOldToNew[oldPosition];
+    }
+
+    /** Returns whether the item at the given new position carries new content. */
+    public boolean isChanged(int newPosition) {
+        return newPosition >= 0 && newPosition < mChanged.length && mChanged[newPosition];
+    }
+
+    /** Returns whether any item was inserted, removed or moved. */
+    public boolean hasStructuralChanges() {
+        return mInsertCount != 0 || mRemoveCount != 0 || mMoveCount != 0;
+    }
+
+    public boolean isEmpty() {
+        return !hasStructuralChanges() && mChangeCount == 0;
+    }
+
+    public String toString() {
+        return "TargetListDiff{inserted="
+                + mInsertCount
+                + ", removed="
+                + mRemoveCount
+                + ", moved="
+                + mMoveCount
+                + ", changed="
+                + mChangeCount
+                + '}';
+    }
+}
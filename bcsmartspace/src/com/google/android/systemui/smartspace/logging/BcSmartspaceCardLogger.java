@@ -1,5 +1,8 @@
 package com.google.android.systemui.smartspace.logging;
 
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.util.Log;
 
 import com.android.systemui.shared.system.SysUiStatsLog;
@@ -7,32 +10,158 @@ import com.android.systemui.shared.system.SysUiStatsLog;
 import com.google.android.systemui.smartspace.BcSmartSpaceUtil;
 import com.google.android.systemui.smartspace.EventEnum;
 
+import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs smartspace card events. Callers only copy the event into a compact record and put it on a
+ * lock-free queue, a background thread serializes the queued events and writes them in batches.
+ * Events are dropped and counted if the queue is full.
+ */
 public class BcSmartspaceCardLogger {
     private static final boolean IS_VERBOSE = BcSmartSpaceUtil.isLoggable("StatsLog");
+    private static final int MAX_QUEUED_EVENTS = 256;
+    private static final long BATCH_DELAY_MS = 100;
+
+    private static final ConcurrentLinkedQueue<LogEvent> sQueue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger sQueuedCount = new AtomicInteger();
+    private static final AtomicBoolean sDrainScheduled = new AtomicBoolean();
+    private static final AtomicLong sEnqueuedCount = new AtomicLong();
+    private static final AtomicLong sWrittenCount = new AtomicLong();
+    private static final AtomicLong sDroppedCount = new AtomicLong();
+    private static final AtomicLong sBatchCount = new AtomicLong();
+    private static final Runnable sDrainRunnable = BcSmartspaceCardLogger::drain;
+    private static volatile Handler sHandler;
+
+    private static Handler getHandler() {
+        Handler handler = sHandler;
+        if (handler == null) {
+            synchronized (BcSmartspaceCardLogger.class) {
+                handler = sHandler;
+                if (handler == null) {
+                    HandlerThread handlerThread =
+                            new HandlerThread(
+                                    "BcSmartspaceCardLogger", Process.THREAD_PRIORITY_BACKGROUND);
+                    handlerThread.start();
+                    handler = new Handler(handlerThread.getLooper());
+                    sHandler = handler;
+                }
+            }
+        }
+        return handler;
+    }
 
     public static void log(
             EventEnum eventEnum, BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo) {
-        SysUiStatsLog.write(
-                352,
-                eventEnum.getId(),
-                bcSmartspaceCardLoggingInfo.getInstanceId(),
-                0,
-                bcSmartspaceCardLoggingInfo.getDisplaySurface(),
-                bcSmartspaceCardLoggingInfo.getRank(),
-                bcSmartspaceCardLoggingInfo.getCardinality(),
-                bcSmartspaceCardLoggingInfo.getFeatureType(),
-                -1,
-                0,
-                0,
-                bcSmartspaceCardLoggingInfo.getReceivedLatency(),
-                BcSmartspaceCardLoggerUtil.convertSubcardInfoToBytes(
-                        bcSmartspaceCardLoggingInfo.getSubcardInfo()));
-        if (IS_VERBOSE) {
-            Log.d(
-                    "StatsLog",
-                    String.format(
-                            "\nLogged Smartspace event(%s), info(%s)",
-                            eventEnum, bcSmartspaceCardLoggingInfo.toString()));
+        if (sQueuedCount.incrementAndGet() > MAX_QUEUED_EVENTS) {
+            sQueuedCount.decrementAndGet();
+            sDroppedCount.incrementAndGet();
+            return;
+        }
+        sQueue.offer(new LogEvent(eventEnum, bcSmartspaceCardLoggingInfo));
+        sEnqueuedCount.incrementAndGet();
+        if (sDrainScheduled.compareAndSet(false, true)) {
+            getHandler().postDelayed(sDrainRunnable, BATCH_DELAY_MS);
+        }
+    }
+
+    private static void drain() {
+        sDrainScheduled.set(false);
+        int count = 0;
+        LogEvent logEvent;
+        while ((logEvent = sQueue.poll()) != null) {
+            sQueuedCount.decrementAndGet();
+            logEvent.write();
+            count++;
+        }
+        if (count > 0) {
+            sWrittenCount.addAndGet(count);
+            sBatchCount.incrementAndGet();
+        }
+    }
+
+    public static void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "BcSmartspaceCardLogger:");
+        pw.println(
+                prefix
+                        + "  enqueued="
+                        + sEnqueuedCount.get()
+                        + " written="
+                        + sWrittenCount.get()
+                        + " dropped="
+                        + sDroppedCount.get()
+                        + " batches="
+                        + sBatchCount.get()
+                        + " queued="
+                        + sQueuedCount.get());
+    }
+
+    /** Everything needed to write one event, copied out of the logging info when it is logged. */
+    private static final class LogEvent {
+        private final EventEnum mEvent;
+        private final int mInstanceId;
+        private final int mDisplaySurface;
+        private final int mRank;
+        private final int mCardinality;
+        private final int mFeatureType;
+        private final int mReceivedLatency;
+        private final int mClickedSubcardIndex;
+        private final int[] mSubcardInstanceIds;
+        private final int[] mSubcardCardTypeIds;
+        private final String mDescription;
+
+        LogEvent(EventEnum eventEnum, BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo) {
+            mEvent = eventEnum;
+            mInstanceId = bcSmartspaceCardLoggingInfo.getInstanceId();
+            mDisplaySurface = bcSmartspaceCardLoggingInfo.getDisplaySurface();
+            mRank = bcSmartspaceCardLoggingInfo.getRank();
+            mCardinality = bcSmartspaceCardLoggingInfo.getCardinality();
+            mFeatureType = bcSmartspaceCardLoggingInfo.getFeatureType();
+            mReceivedLatency = bcSmartspaceCardLoggingInfo.getReceivedLatency();
+            BcSmartspaceSubcardLoggingInfo subcardInfo =
+                    bcSmartspaceCardLoggingInfo.getSubcardInfo();
+            int count = subcardInfo == null ? 0 : subcardInfo.getSubcardCount();
+            if (count == 0) {
+                mClickedSubcardIndex = 0;
+                mSubcardInstanceIds = null;
+                mSubcardCardTypeIds = null;
+            } else {
+                mClickedSubcardIndex = subcardInfo.getClickedSubcardIndex();
+                mSubcardInstanceIds = new int[count];
+                mSubcardCardTypeIds = new int[count];
+                for (int i = 0; i < count; i++) {
+                    mSubcardInstanceIds[i] = subcardInfo.getSubcardInstanceId(i);
+                    mSubcardCardTypeIds[i] = subcardInfo.getSubcardCardTypeId(i);
+                }
+            }
+            mDescription = IS_VERBOSE ? bcSmartspaceCardLoggingInfo.toString() : null;
+        }
+
+        void write() {
+            SysUiStatsLog.write(
+                    352,
+                    mEvent.getId(),
+                    mInstanceId,
+                    0,
+                    mDisplaySurface,
+                    mRank,
+                    mCardinality,
+                    mFeatureType,
+                    -1,
+                    0,
+                    0,
+                    mReceivedLatency,
+                    BcSmartspaceCardLoggerUtil.convertSubcardInfoToBytes(
+                            mClickedSubcardIndex, mSubcardInstanceIds, mSubcardCardTypeIds));
+            if (IS_VERBOSE) {
+                Log.d(
+                        "StatsLog",
+                        String.format(
+                                "\nLogged Smartspace event(%s), info(%s)", mEvent, mDescription));
+            }
         }
     }
 }
@@ -9,34 +9,38 @@ import com.android.systemui.smartspace.nano.SmartspaceProto.SmartSpaceSubcards;
 import com.google.android.systemui.smartspace.InstanceId;
 import com.google.protobuf.nano.MessageNano;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class BcSmartspaceCardLoggerUtil {
     public static byte[] convertSubcardInfoToBytes(
             BcSmartspaceSubcardLoggingInfo bcSmartspaceSubcardLoggingInfo) {
         if (bcSmartspaceSubcardLoggingInfo == null
-                || bcSmartspaceSubcardLoggingInfo.getSubcards() == null
-                || bcSmartspaceSubcardLoggingInfo.getSubcards().isEmpty()) {
+                || bcSmartspaceSubcardLoggingInfo.getSubcardCount() == 0) {
+            return null;
+        }
+        int count = bcSmartspaceSubcardLoggingInfo.getSubcardCount();
+        int[] instanceIds = new int[count];
+        int[] cardTypeIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            instanceIds[i] = bcSmartspaceSubcardLoggingInfo.getSubcardInstanceId(i);
+            cardTypeIds[i] = bcSmartspaceSubcardLoggingInfo.getSubcardCardTypeId(i);
+        }
+        return convertSubcardInfoToBytes(
+                bcSmartspaceSubcardLoggingInfo.getClickedSubcardIndex(), instanceIds, cardTypeIds);
+    }
+
+    public static byte[] convertSubcardInfoToBytes(
+            int clickedSubcardIndex, int[] instanceIds, int[] cardTypeIds) {
+        if (instanceIds == null || instanceIds.length == 0) {
             return null;
         }
         SmartSpaceSubcards smartSpaceSubcards = new SmartSpaceSubcards();
-        smartSpaceSubcards.clickedSubcardIndex =
-                bcSmartspaceSubcardLoggingInfo.getClickedSubcardIndex();
-        List<BcSmartspaceCardMetadataLoggingInfo> subcards =
-                bcSmartspaceSubcardLoggingInfo.getSubcards();
-        ArrayList arrayList = new ArrayList();
-        for (int i = 0; i < subcards.size(); i++) {
-            BcSmartspaceCardMetadataLoggingInfo bcSmartspaceCardMetadataLoggingInfo =
-                    subcards.get(i);
+        smartSpaceSubcards.clickedSubcardIndex = clickedSubcardIndex;
+        smartSpaceSubcards.subcards = new SmartSpaceCardMetadata[instanceIds.length];
+        for (int i = 0; i < instanceIds.length; i++) {
             SmartSpaceCardMetadata smartSpaceCardMetadata = new SmartSpaceCardMetadata();
-            smartSpaceCardMetadata.instanceId = bcSmartspaceCardMetadataLoggingInfo.getInstanceId();
-            smartSpaceCardMetadata.cardTypeId = bcSmartspaceCardMetadataLoggingInfo.getCardTypeId();
-            arrayList.add(smartSpaceCardMetadata);
+            smartSpaceCardMetadata.instanceId = instanceIds[i];
+            smartSpaceCardMetadata.cardTypeId = cardTypeIds[i];
+            smartSpaceSubcards.subcards[i] = smartSpaceCardMetadata;
         }
-        smartSpaceSubcards.subcards =
-                (SmartSpaceCardMetadata[])
-                        arrayList.toArray(new SmartSpaceCardMetadata[arrayList.size()]);
         return MessageNano.toByteArray(smartSpaceSubcards);
     }
 
@@ -49,27 +53,37 @@ public class BcSmartspaceCardLoggerUtil {
             return;
         }
         bcSmartspaceCardLoggingInfo.setFeatureType(i);
+        injectWeatherSubcard(bcSmartspaceCardLoggingInfo, smartspaceTarget);
+    }
+
+    static void injectWeatherSubcard(
+            BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
+            SmartspaceTarget smartspaceTarget) {
         if ("date_card_794317_92634".equals(smartspaceTarget.getSmartspaceTargetId())) {
             return;
         }
-        if (bcSmartspaceCardLoggingInfo.getSubcardInfo() == null) {
-            bcSmartspaceCardLoggingInfo.setSubcardInfo(
-                    new BcSmartspaceSubcardLoggingInfo.Builder()
-                            .setClickedSubcardIndex(0)
-                            .setSubcards(new ArrayList())
-                            .build());
+        bcSmartspaceCardLoggingInfo
+                .obtainSubcardInfo()
+                .addSubcard(InstanceId.create(smartspaceTarget), 1);
+    }
+
+    /** Adds the subcard described by the target's base action extras, if it has one. */
+    static void addSubcardLoggingInfo(
+            BcSmartspaceCardLoggingInfo bcSmartspaceCardLoggingInfo,
+            SmartspaceTarget smartspaceTarget) {
+        SmartspaceAction baseAction = smartspaceTarget.getBaseAction();
+        if (baseAction == null || baseAction.getExtras() == null) {
+            return;
         }
-        if (bcSmartspaceCardLoggingInfo.getSubcardInfo().getSubcards() == null) {
-            bcSmartspaceCardLoggingInfo.getSubcardInfo().setSubcards(new ArrayList());
+        int subcardType = baseAction.getExtras().getInt("subcardType", -1);
+        if (subcardType == -1) {
+            return;
         }
         bcSmartspaceCardLoggingInfo
-                .getSubcardInfo()
-                .getSubcards()
-                .add(
-                        new BcSmartspaceCardMetadataLoggingInfo.Builder()
-                                .setInstanceId(InstanceId.create(smartspaceTarget))
-                                .setCardTypeId(1)
-                                .build());
+                .obtainSubcardInfo()
+                .addSubcard(
+                        InstanceId.create(baseAction.getExtras().getString("subcardId")),
+                        subcardType);
     }
 
     public static BcSmartspaceSubcardLoggingInfo createSubcardLoggingInfo(
@@ -82,17 +96,11 @@ public class BcSmartspaceCardLoggerUtil {
             return null;
         }
         SmartspaceAction baseAction = smartspaceTarget.getBaseAction();
-        int create = InstanceId.create(baseAction.getExtras().getString("subcardId"));
-        BcSmartspaceCardMetadataLoggingInfo build =
-                new BcSmartspaceCardMetadataLoggingInfo.Builder()
-                        .setInstanceId(create)
-                        .setCardTypeId(baseAction.getExtras().getInt("subcardType"))
-                        .build();
-        ArrayList arrayList = new ArrayList();
-        arrayList.add(build);
-        return new BcSmartspaceSubcardLoggingInfo.Builder()
-                .setSubcards(arrayList)
-                .setClickedSubcardIndex(0)
-                .build();
+        BcSmartspaceSubcardLoggingInfo build =
+                new BcSmartspaceSubcardLoggingInfo.Builder().setClickedSubcardIndex(0).build();
+        build.addSubcard(
+                InstanceId.create(baseAction.getExtras().getString("subcardId")),
+                baseAction.getExtras().getInt("subcardType"));
+        return build;
     }
 }
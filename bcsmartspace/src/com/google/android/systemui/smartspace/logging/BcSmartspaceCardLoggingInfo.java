@@ -1,13 +1,21 @@
 package com.google.android.systemui.smartspace.logging;
 
+import android.app.smartspace.SmartspaceTarget;
+
+import com.google.android.systemui.smartspace.InstanceId;
+
 public class BcSmartspaceCardLoggingInfo {
-    private final int mCardinality;
-    private final int mDisplaySurface;
+    private int mCardinality;
+    private int mDisplaySurface;
     private int mFeatureType;
-    private final int mInstanceId;
-    private final int mRank;
-    private final int mReceivedLatency;
+    private int mInstanceId;
+    private int mRank;
+    private int mReceivedLatency;
     private BcSmartspaceSubcardLoggingInfo mSubcardInfo;
+    private BcSmartspaceSubcardLoggingInfo mReusableSubcardInfo;
+    // Set by bind() until the instance id and subcards are first needed.
+    private SmartspaceTarget mPendingTarget;
+    private boolean mInjectWeatherSubcard;
 
     private BcSmartspaceCardLoggingInfo(Builder builder) {
         mInstanceId = builder.mInstanceId;
@@ -19,7 +27,60 @@ public class BcSmartspaceCardLoggingInfo {
         mSubcardInfo = builder.mSubcardInfo;
     }
 
+    /**
+     * Rebinds this info to a target so one instance can be reused across binds. The instance id
+     * and subcards are only computed once something reads them, usually when an event is logged.
+     * Targets of feature type 1 are reported as {@code primaryFeatureType} with the weather
+     * subcard injected, see {@link
+     * BcSmartspaceCardLoggerUtil#forcePrimaryFeatureTypeAndInjectWeatherSubcard}.
+     */
+    public void bind(
+            SmartspaceTarget smartspaceTarget,
+            int displaySurface,
+            int rank,
+            int cardinality,
+            int primaryFeatureType) {
+        mPendingTarget = smartspaceTarget;
+        mInjectWeatherSubcard = smartspaceTarget.getFeatureType() == 1;
+        mInstanceId = 0;
+        mDisplaySurface = displaySurface;
+        mRank = rank;
+        mCardinality = cardinality;
+        mFeatureType =
+                mInjectWeatherSubcard ? primaryFeatureType : smartspaceTarget.getFeatureType();
+        mReceivedLatency = 0;
+        mSubcardInfo = null;
+    }
+
+    private void resolve() {
+        SmartspaceTarget smartspaceTarget = mPendingTarget;
+        if (smartspaceTarget == null) {
+            return;
+        }
+        mPendingTarget = null;
+        mInstanceId = InstanceId.create(smartspaceTarget);
+        BcSmartspaceCardLoggerUtil.addSubcardLoggingInfo(this, smartspaceTarget);
+        if (mInjectWeatherSubcard) {
+            BcSmartspaceCardLoggerUtil.injectWeatherSubcard(this, smartspaceTarget);
+        }
+    }
+
+    /** Returns the subcard info, reusing this info's own instance if none is set. */
+    public BcSmartspaceSubcardLoggingInfo obtainSubcardInfo() {
+        resolve();
+        if (mSubcardInfo == null) {
+            if (mReusableSubcardInfo == null) {
+                mReusableSubcardInfo = new BcSmartspaceSubcardLoggingInfo.Builder().build();
+            } else {
+                mReusableSubcardInfo.clear();
+            }
+            mSubcardInfo = mReusableSubcardInfo;
+        }
+        return mSubcardInfo;
+    }
+
     public int getInstanceId() {
+        resolve();
         return mInstanceId;
     }
 
@@ -44,6 +105,7 @@ public class BcSmartspaceCardLoggingInfo {
     }
 
     public BcSmartspaceSubcardLoggingInfo getSubcardInfo() {
+        resolve();
         return mSubcardInfo;
     }
 
@@ -52,6 +114,7 @@ public class BcSmartspaceCardLoggingInfo {
     }
 
     public void setSubcardInfo(BcSmartspaceSubcardLoggingInfo bcSmartspaceSubcardLoggingInfo) {
+        resolve();
         mSubcardInfo = bcSmartspaceSubcardLoggingInfo;
     }
 
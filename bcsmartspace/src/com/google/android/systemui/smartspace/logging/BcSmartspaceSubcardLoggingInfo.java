@@ -1,27 +1,84 @@
 package com.google.android.systemui.smartspace.logging;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class BcSmartspaceSubcardLoggingInfo {
     private int mClickedSubcardIndex;
-    private List<BcSmartspaceCardMetadataLoggingInfo> mSubcards;
+    // Subcard metadata is kept in parallel arrays so the info can be refilled on every bind
+    // without allocating.
+    private int[] mInstanceIds = new int[2];
+    private int[] mCardTypeIds = new int[2];
+    private int mCount = 0;
 
     private BcSmartspaceSubcardLoggingInfo(Builder builder) {
-        if (builder.mSubcards == null) {
-            mSubcards = new ArrayList();
-        } else {
-            mSubcards = builder.mSubcards;
-        }
+        setSubcards(builder.mSubcards);
         mClickedSubcardIndex = builder.mClickedSubcardIndex;
     }
 
+    public int getSubcardCount() {
+        return mCount;
+    }
+
+    public int getSubcardInstanceId(int i) {
+        return mInstanceIds[i];
+    }
+
+    public int getSubcardCardTypeId(int i) {
+        return mCardTypeIds[i];
+    }
+
+    public void addSubcard(int instanceId, int cardTypeId) {
+        if (mCount == mInstanceIds.length) {
+            mInstanceIds = Arrays.copyOf(mInstanceIds, mCount * 2);
+            mCardTypeIds = Arrays.copyOf(mCardTypeIds, mCount * 2);
+        }
+        mInstanceIds[mCount] = instanceId;
+        mCardTypeIds[mCount] = cardTypeId;
+        mCount++;
+    }
+
+    public void clear() {
+        mCount = 0;
+        mClickedSubcardIndex = 0;
+    }
+
+    /** Returns a copy of the subcards, use the indexed getters where possible. */
     public List<BcSmartspaceCardMetadataLoggingInfo> getSubcards() {
-        return mSubcards;
+        List<BcSmartspaceCardMetadataLoggingInfo> list = new ArrayList<>(mCount);
+        for (int i = 0; i < mCount; i++) {
+            list.add(
+                    new BcSmartspaceCardMetadataLoggingInfo.Builder()
+                            .setInstanceId(mInstanceIds[i])
+                            .setCardTypeId(mCardTypeIds[i])
+                            .build());
+        }
+        return list;
     }
 
     public void setSubcards(List<BcSmartspaceCardMetadataLoggingInfo> list) {
-        mSubcards = list;
+        mCount = 0;
+        if (list == null) {
+            return;
+        }
+        for (BcSmartspaceCardMetadataLoggingInfo bcSmartspaceCardMetadataLoggingInfo : list) {
+            if (bcSmartspaceCardMetadataLoggingInfo != null) {
+                addSubcard(
+                        bcSmartspaceCardMetadataLoggingInfo.getInstanceId(),
+                        bcSmartspaceCardMetadataLoggingInfo.getCardTypeId());
+            }
+        }
+    }
+
+    /** Returns the 1-based index of the first subcard of the given card type, or 0 if none. */
+    public int getSubcardIndex(int cardTypeId) {
+        for (int i = 0; i < mCount; i++) {
+            if (mCardTypeIds[i] == cardTypeId) {
+                return i + 1;
+            }
+        }
+        return 0;
     }
 
     public int getClickedSubcardIndex() {
@@ -33,11 +90,21 @@ public class BcSmartspaceSubcardLoggingInfo {
     }
 
     public String toString() {
-        return "BcSmartspaceSubcardLoggingInfo{mSubcards="
-                + mSubcards
-                + ", mClickedSubcardIndex="
-                + mClickedSubcardIndex
-                + '}';
+        StringBuilder sb = new StringBuilder("BcSmartspaceSubcardLoggingInfo{mSubcards=[");
+        for (int i = 0; i < mCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("{mInstanceId=")
+                    .append(mInstanceIds[i])
+                    .append(", mCardTypeId=")
+                    .append(mCardTypeIds[i])
+                    .append('}');
+        }
+        return sb.append("], mClickedSubcardIndex=")
+                .append(mClickedSubcardIndex)
+                .append('}')
+                .toString();
     }
 
     public static class Builder {
@@ -333,7 +333,9 @@ public abstract class FlamingoSystemUIModule {
 
     @Provides
     @SysUISingleton
-    static BcSmartspaceDataPlugin provideBcSmartspaceDataPlugin() {
-        return new BcSmartspaceDataProvider();
+    static BcSmartspaceDataPlugin provideBcSmartspaceDataPlugin(Context context, DumpManager dumpManager) {
+        final BcSmartspaceDataProvider provider = new BcSmartspaceDataProvider(context);
+        dumpManager.registerDumpable(BcSmartspaceDataProvider.class.getSimpleName(), provider::dump);
+        return provider;
     }
 }
@@ -17,6 +17,8 @@
 package com.flamingo.systemui.game
 
 import android.app.Activity
+import android.app.ActivityManager
+import android.app.ActivityManager.RunningTaskInfo
 import android.app.IActivityManager
 import android.app.PendingIntent
 import android.app.TaskStackListener
@@ -35,7 +37,6 @@ import android.content.pm.PackageManager.NameNotFoundException
 import android.database.ContentObserver
 import android.media.AudioManager
 import android.net.Uri
-import android.os.Bundle
 import android.os.IBinder
 import android.os.RemoteException
 import android.os.UserHandle
@@ -43,6 +44,7 @@ import android.provider.Settings
 import android.telephony.TelephonyCallback.CallStateListener
 import android.telephony.TelephonyManager
 import android.util.Log
+import android.util.SparseArray
 
 import androidx.lifecycle.Observer
 
@@ -77,16 +79,21 @@ import com.android.systemui.telephony.TelephonyListenerManager
 import com.android.systemui.util.RingerModeTracker
 import com.android.systemui.util.settings.SystemSettings
 
+import java.io.PrintWriter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
 import javax.inject.Inject
 
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
@@ -126,7 +133,14 @@ class GameSpaceServiceDelegate @Inject constructor(
                     }
                     Settings.System.GAMESPACE_PACKAGE_LIST -> {
                         stateMutex.withLock {
-                            gameSpacePackages = getPackages(key)
+                            val packages = getPackages(key)
+                            // Games the user removed from the list must not come back with
+                            // the dynamically added ones that are not written yet.
+                            unsavedPackages.removeAll { it in savedPackages && it !in packages }
+                            savedPackages = packages
+                            gameSpacePackages = LinkedHashSet(packages).apply {
+                                addAll(unsavedPackages)
+                            }
                             if (!gameSpacePackages.contains(currentTopPackageName)) {
                                 disableGameModeLocked()
                             }
@@ -140,22 +154,26 @@ class GameSpaceServiceDelegate @Inject constructor(
                     Settings.System.GAMESPACE_DISABLE_HEADSUP -> {
                         stateMutex.withLock {
                             disableHeadsUp = getBoolSetting(key, DEFAULT_GAMESPACE_DISABLE_HEADSUP)
+                            publishStateLocked()
                         }
                     }
                     Settings.System.GAMESPACE_DISABLE_FULLSCREEN_INTENT -> {
                         stateMutex.withLock {
                             disableFullscreenIntent = getBoolSetting(key, DEFAULT_GAMESPACE_DISABLE_FULLSCREEN_INTENT)
+                            publishStateLocked()
                         }
                     }
                     Settings.System.GAMESPACE_DISABLE_CALL_RINGING -> {
                         stateMutex.withLock {
                             disableCallRinging = getBoolSetting(key, DEFAULT_GAMESPACE_DISABLE_CALL_RINGING)
+                            publishStateLocked()
                         }
                     }
                     Settings.System.GAMESPACE_HIDE_PRIVACY_INDICATORS -> {
                         stateMutex.withLock {
                             hidePrivacyIndicators = getBoolSetting(key, DEFAULT_GAMESPACE_HIDE_PRIVACY_INDICATORS)
                             updatePrivacyIndicatorsLocked()
+                            publishStateLocked()
                         }
                     }
                 }
@@ -169,7 +187,22 @@ class GameSpaceServiceDelegate @Inject constructor(
     private var gameSpaceEnabled = DEFAULT_GAMESPACE_ENABLED
 
     @GuardedBy("stateMutex")
-    private var gameSpacePackages = emptyList<String>()
+    private var gameSpacePackages = LinkedHashSet<String>()
+
+    // The list as last read from or written to settings.
+    @GuardedBy("stateMutex")
+    private var savedPackages = emptySet<String>()
+
+    // Games added in dynamic mode that are waiting to be written to settings.
+    @GuardedBy("stateMutex")
+    private val unsavedPackages = mutableSetOf<String>()
+
+    @GuardedBy("stateMutex")
+    private var persistPackagesJob: Job? = null
+
+    // User the games waiting to be written were added for.
+    @GuardedBy("stateMutex")
+    private var persistPackagesUserId = UserHandle.USER_NULL
 
     @GuardedBy("stateMutex")
     private var dynamicMode = DEFAULT_GAMESPACE_DYNAMIC_MODE
@@ -189,16 +222,109 @@ class GameSpaceServiceDelegate @Inject constructor(
     @GuardedBy("stateMutex")
     private var taskStackListenerRegistered = false
 
+    // Focused task state is tracked from the task info the listener callbacks
+    // carry. Activity manager is only asked when focus moves to a task we know
+    // nothing about, or whose state may have changed since it was last seen.
+    private val taskLock = Any()
+
+    @GuardedBy("taskLock")
+    private val knownTasks = SparseArray<TaskState>()
+
+    @GuardedBy("taskLock")
+    private var focusedTaskId = INVALID_TASK_ID
+
+    // Bumped on every stack change. Windowing mode changes are only reported
+    // through onTaskStackChanged, so states seen before one are not trusted
+    // when their task regains focus.
+    @GuardedBy("taskLock")
+    private var taskStackGeneration = 0
+
+    private val taskEventCount = AtomicInteger()
+    private val topAppQueryCount = AtomicInteger()
+
     private val taskStackListener = object : TaskStackListener() {
         override fun onTaskStackChanged() {
+            taskEventCount.incrementAndGet()
+            synchronized(taskLock) {
+                taskStackGeneration++
+            }
+        }
+
+        override fun onTaskDescriptionChanged(taskInfo: RunningTaskInfo) {
+            // Also sent when the top activity of a task changes, e.g. when an
+            // activity of another package is started in it.
+            taskEventCount.incrementAndGet()
+            val taskState = synchronized(taskLock) {
+                TaskState(taskInfo, taskStackGeneration).also {
+                    knownTasks.put(taskInfo.taskId, it)
+                }.takeIf { taskInfo.taskId == focusedTaskId }
+            } ?: return
+            taskState.topPackageName?.let { taskStackChangeChannel.trySend(it) }
+        }
+
+        override fun onActivityPinned(packageName: String, userId: Int, taskId: Int, stackId: Int) {
+            taskEventCount.incrementAndGet()
+            synchronized(taskLock) {
+                knownTasks.remove(taskId)
+            }
+        }
+
+        override fun onTaskMovedToFront(taskInfo: RunningTaskInfo) {
             logD {
-                "onTaskStackChanged"
+                "onTaskMovedToFront: taskId = ${taskInfo.taskId}"
             }
-            coroutineScope.launch {
-                val topApp = withContext(Dispatchers.Default) {
-                    getTopApp()
-                } ?: return@launch
-                taskStackChangeChannel.send(topApp)
+            onTaskFocused(taskInfo)
+        }
+
+        override fun onActivityRestartAttempt(
+            taskInfo: RunningTaskInfo,
+            homeTaskVisible: Boolean,
+            clearedTask: Boolean,
+            wasVisible: Boolean
+        ) {
+            logD {
+                "onActivityRestartAttempt: taskId = ${taskInfo.taskId}"
+            }
+            onTaskFocused(taskInfo)
+        }
+
+        override fun onTaskFocusChanged(taskId: Int, focused: Boolean) {
+            taskEventCount.incrementAndGet()
+            if (!focused) {
+                synchronized(taskLock) {
+                    if (focusedTaskId == taskId) focusedTaskId = INVALID_TASK_ID
+                }
+                return
+            }
+            logD {
+                "onTaskFocusChanged: taskId = $taskId"
+            }
+            val taskState = synchronized(taskLock) {
+                // Already reported by onTaskMovedToFront.
+                if (focusedTaskId == taskId) return
+                focusedTaskId = taskId
+                val cachedState = knownTasks[taskId]
+                if (cachedState != null && cachedState.generation != taskStackGeneration) {
+                    knownTasks.remove(taskId)
+                    null
+                } else {
+                    cachedState
+                }
+            }
+            if (taskState != null) {
+                taskState.topPackageName?.let { taskStackChangeChannel.trySend(it) }
+            } else {
+                queryTopApp()
+            }
+        }
+
+        override fun onTaskRemoved(taskId: Int) {
+            taskEventCount.incrementAndGet()
+            synchronized(taskLock) {
+                knownTasks.remove(taskId)
+                if (focusedTaskId == taskId) {
+                    focusedTaskId = INVALID_TASK_ID
+                }
             }
         }
     }
@@ -208,16 +334,19 @@ class GameSpaceServiceDelegate @Inject constructor(
 
     private val notificationInterruptSuppressor = object : NotificationInterruptSuppressor {
         override fun suppressAwakeInterruptions(entry: NotificationEntry) =
-            runBlocking {
-                stateMutex.withLock {
-                    gameModeEnabled && disableHeadsUp
-                }
-            }
+            gameModeState.get().let { it.enabled && it.disableHeadsUp }
     }
 
     @GuardedBy("stateMutex")
     private var gameModeEnabled = false
 
+    @GuardedBy("stateMutex")
+    private var gameModePackageName: String? = null
+
+    // Copy of the game mode flags for readers that must not wait on stateMutex,
+    // like the notification pipeline. Republished whenever one of them changes.
+    private val gameModeState = AtomicReference(GameModeState())
+
     private val audioManager = context.getSystemService(AudioManager::class.java)
 
     @GuardedBy("stateMutex")
@@ -231,21 +360,17 @@ class GameSpaceServiceDelegate @Inject constructor(
     private var previousBrightnessMode = Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL
 
     @GuardedBy("stateMutex")
-    private val gameSpaceConfig = Bundle()
+    private val gameSpaceState = GameSpaceState()
     private val iGameSpaceServiceCallback = object : IGameSpaceServiceCallback.Stub() {
         override fun setGesturalNavigationLocked(isLocked: Boolean) {
             coroutineScope.launch(Dispatchers.Default) {
                 try {
                     iStatusBarService.setBlockedGesturalNavigation(isLocked)
-                    val configCopy = stateMutex.withLock {
-                        gameSpaceConfig.putBoolean(CONFIG_BACK_GESTURE_LOCKED, isLocked)
-                        gameSpaceConfig.deepCopy()
-                    }
-                    iGameSpaceService?.onStateChanged(configCopy) ?:
-                        Log.wtf(TAG, "Service binder is null, failed to notify gesture lock change")
                 } catch(e: RemoteException) {
                     Log.e(TAG, "Failed to set gestural navigation lock", e)
+                    return@launch
                 }
+                updateState("gesture lock") { isBackGestureLocked = isLocked }
             }
         }
 
@@ -364,8 +489,8 @@ class GameSpaceServiceDelegate @Inject constructor(
                     try {
                         it.setCallback(iGameSpaceServiceCallback)
 
-                        val configCopy = stateMutex.withLock { gameSpaceConfig.deepCopy() }
-                        it.onStateChanged(configCopy)
+                        val state = stateMutex.withLock { gameSpaceState.snapshot() }
+                        it.onStateChanged(state)
 
                         val topPackage = stateMutex.withLock { currentTopPackageName }
                         logD {
@@ -402,6 +527,37 @@ class GameSpaceServiceDelegate @Inject constructor(
 
     private val pm = mContext.packageManager
 
+    // Category of every package isGame has looked at, so app switches don't need
+    // a package manager call. Entries are dropped when the package changes.
+    private val appClassifications = ConcurrentHashMap<String, Int>()
+
+    // Bumped on every package change, so lookups that raced with one don't keep what they read.
+    private val classificationGeneration = AtomicInteger()
+    private val packageChangeReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context?, intent: Intent?) {
+            val packageName = intent?.data?.schemeSpecificPart ?: return
+            logD {
+                "${intent.action}: invalidating classification of $packageName"
+            }
+            classificationGeneration.incrementAndGet()
+            appClassifications.remove(packageName)
+        }
+    }
+
+    private val userSwitchReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context?, intent: Intent?) {
+            coroutineScope.launch(Dispatchers.IO) {
+                stateMutex.withLock {
+                    // Write the games of the previous user now instead of after the delay.
+                    val job = persistPackagesJob ?: return@withLock
+                    job.cancel()
+                    persistPackagesJob = null
+                    persistPackagesLocked(persistPackagesUserId)
+                }
+            }
+        }
+    }
+
     private val broadcastReceiver = object : BroadcastReceiver() {
         override fun onReceive(mContext: Context?, intent: Intent?) {
             if (intent?.action == ACTION_STOP_GAME_MODE) {
@@ -504,16 +660,7 @@ class GameSpaceServiceDelegate @Inject constructor(
             "Ringer mode changed to $it"
         }
         coroutineScope.launch(Dispatchers.Default) {
-            val configCopy = stateMutex.withLock {
-                gameSpaceConfig.putInt(CONFIG_RINGER_MODE, it)
-                gameSpaceConfig.deepCopy()
-            }
-            try {
-                iGameSpaceService?.onStateChanged(configCopy) ?:
-                    Log.wtf(TAG, "Service binder is null, failed to notify ringer mode change")
-            } catch(e: RemoteException) {
-                Log.e(TAG, "Failed to notify ringer mode change", e)
-            }
+            updateState("ringer mode") { ringerMode = it }
         }
     }
 
@@ -531,35 +678,40 @@ class GameSpaceServiceDelegate @Inject constructor(
 
         override fun onCountdown(millisUntilFinished: Long) {
             coroutineScope.launch(Dispatchers.Default) {
-                val configCopy = stateMutex.withLock {
-                    gameSpaceConfig.putBoolean(CONFIG_SCREEN_RECORD, true)
-                    gameSpaceConfig.deepCopy()
-                }
+                // Only the first tick changes the state, the rest are just the countdown.
+                updateState("screen record state") { isScreenRecording = true }
                 try {
-                    iGameSpaceService?.onStateChanged(configCopy) ?:
-                        Log.wtf(TAG, "Service binder is null, failed to notify screen record state change")
+                    iGameSpaceService?.onScreenRecordCountdown(millisUntilFinished)
                 } catch(e: RemoteException) {
-                    Log.e(TAG, "Failed to notify screen record state change", e)
+                    Log.e(TAG, "Failed to notify screen record countdown", e)
                 }
             }
         }
 
         override fun onRecordingEnd() {
             coroutineScope.launch(Dispatchers.Default) {
-                val configCopy = stateMutex.withLock {
-                    gameSpaceConfig.putBoolean(CONFIG_SCREEN_RECORD, false)
-                    gameSpaceConfig.deepCopy()
-                }
-                try {
-                    iGameSpaceService?.onStateChanged(configCopy) ?:
-                        Log.wtf(TAG, "Service binder is null, failed to notify screen record state change")
-                } catch(e: RemoteException) {
-                    Log.e(TAG, "Failed to notify screen record state change", e)
-                }
+                updateState("screen record state") { isScreenRecording = false }
             }
         }
     }
 
+    /**
+     * Applies [update] to the game space state and sends the fields
+     * that changed to the service, if any.
+     */
+    private suspend fun updateState(what: String, update: GameSpaceState.() -> Unit) {
+        val changes = stateMutex.withLock {
+            gameSpaceState.update()
+            gameSpaceState.takeChanges()
+        } ?: return
+        try {
+            iGameSpaceService?.onStateChanged(changes) ?:
+                Log.wtf(TAG, "Service binder is null, failed to notify $what change")
+        } catch(e: RemoteException) {
+            Log.e(TAG, "Failed to notify $what change", e)
+        }
+    }
+
     override fun start() {
         logD {
             "start"
@@ -588,12 +740,36 @@ class GameSpaceServiceDelegate @Inject constructor(
         }
         gameSpaceIntent.component = serviceComponent
 
+        mContext.registerReceiverAsUser(
+            packageChangeReceiver,
+            UserHandle.ALL,
+            IntentFilter().apply {
+                addAction(Intent.ACTION_PACKAGE_ADDED)
+                addAction(Intent.ACTION_PACKAGE_REPLACED)
+                addAction(Intent.ACTION_PACKAGE_REMOVED)
+                addDataScheme("package")
+            },
+            null /* broadcastPermission */,
+            null /* scheduler */
+        )
+        mContext.registerReceiverAsUser(
+            userSwitchReceiver,
+            UserHandle.ALL,
+            IntentFilter(Intent.ACTION_USER_SWITCHED),
+            null /* broadcastPermission */,
+            null /* scheduler */
+        )
         coroutineScope.launch(Dispatchers.IO) {
-            stateMutex.withLock {
+            val shouldPrime = stateMutex.withLock {
                 loadSettingsLocked()
+                publishStateLocked()
                 if (gameSpaceEnabled) {
                     registerTaskStackListenerLocked()
                 }
+                gameSpaceEnabled && dynamicMode
+            }
+            if (shouldPrime) {
+                primeAppClassifications()
             }
         }
         notificationInterruptStateProvider.addSuppressor(notificationInterruptSuppressor)
@@ -609,7 +785,8 @@ class GameSpaceServiceDelegate @Inject constructor(
 
     private suspend fun loadSettingsLocked() {
         gameSpaceEnabled = getBoolSetting(Settings.System.GAMESPACE_ENABLED, DEFAULT_GAMESPACE_ENABLED)
-        gameSpacePackages = getPackages(Settings.System.GAMESPACE_PACKAGE_LIST)
+        savedPackages = getPackages(Settings.System.GAMESPACE_PACKAGE_LIST)
+        gameSpacePackages = LinkedHashSet(savedPackages)
         dynamicMode = getBoolSetting(Settings.System.GAMESPACE_DYNAMIC_MODE, DEFAULT_GAMESPACE_DYNAMIC_MODE)
         disableHeadsUp = getBoolSetting(Settings.System.GAMESPACE_DISABLE_HEADSUP, DEFAULT_GAMESPACE_DISABLE_HEADSUP)
         disableFullscreenIntent = getBoolSetting(
@@ -632,12 +809,65 @@ class GameSpaceServiceDelegate @Inject constructor(
         }
     }
 
+    @GuardedBy("stateMutex")
+    private fun publishStateLocked() {
+        gameModeState.set(
+            GameModeState(
+                enabled = gameModeEnabled,
+                disableHeadsUp = disableHeadsUp,
+                disableFullscreenIntent = disableFullscreenIntent,
+                hidePrivacyIndicators = hidePrivacyIndicators,
+                disableCallRinging = disableCallRinging,
+                packageName = gameModePackageName
+            )
+        )
+    }
+
     private fun getBoolSetting(key: String, def: Boolean) =
         systemSettings.getIntForUser(key, if (def) 1 else 0, UserHandle.USER_CURRENT) == 1
 
-    private fun getPackages(key: String): List<String> {
-        val flattendString = systemSettings.getStringForUser(key, UserHandle.USER_CURRENT)
-        return flattendString?.split(PACKAGE_DELIMITER) ?: emptyList()
+    private fun getPackages(key: String, userId: Int = UserHandle.USER_CURRENT): LinkedHashSet<String> {
+        val flattendString = systemSettings.getStringForUser(key, userId)
+        return flattendString?.split(PACKAGE_DELIMITER)
+            ?.filterTo(LinkedHashSet()) { it.isNotEmpty() }
+            ?: LinkedHashSet()
+    }
+
+    @GuardedBy("stateMutex")
+    private fun schedulePersistPackagesLocked() {
+        if (persistPackagesJob?.isActive == true) return
+        // The write may only happen after a user switch, so it goes to the user the games
+        // were added for.
+        val userId = ActivityManager.getCurrentUser()
+        persistPackagesUserId = userId
+        // Batch the games added shortly after each other into a single write.
+        persistPackagesJob = coroutineScope.launch(Dispatchers.IO) {
+            delay(PERSIST_PACKAGES_DELAY_MS)
+            stateMutex.withLock {
+                persistPackagesJob = null
+                persistPackagesLocked(userId)
+            }
+        }
+    }
+
+    @GuardedBy("stateMutex")
+    private fun persistPackagesLocked(userId: Int) {
+        // Add to the list in settings instead of overwriting it with ours, so games
+        // removed there since it was last read stay removed.
+        val packages = getPackages(Settings.System.GAMESPACE_PACKAGE_LIST, userId).apply {
+            addAll(unsavedPackages)
+        }
+        unsavedPackages.clear()
+        savedPackages = packages
+        val flattendString = packages.joinToString(PACKAGE_DELIMITER)
+        logD {
+            "Persisting packages $flattendString for user $userId"
+        }
+        systemSettings.putStringForUser(
+            Settings.System.GAMESPACE_PACKAGE_LIST,
+            flattendString,
+            userId
+        )
     }
 
     private suspend fun registerTaskStackListenerLocked() {
@@ -667,6 +897,29 @@ class GameSpaceServiceDelegate @Inject constructor(
             // Cancel job no matter what
             taskStackChannelReceiveJob?.cancel()
             taskStackChannelReceiveJob = null
+            synchronized(taskLock) {
+                knownTasks.clear()
+                focusedTaskId = INVALID_TASK_ID
+            }
+        }
+    }
+
+    private fun onTaskFocused(taskInfo: RunningTaskInfo) {
+        taskEventCount.incrementAndGet()
+        val taskState = synchronized(taskLock) {
+            focusedTaskId = taskInfo.taskId
+            TaskState(taskInfo, taskStackGeneration).also {
+                knownTasks.put(taskInfo.taskId, it)
+            }
+        }
+        taskState.topPackageName?.let { taskStackChangeChannel.trySend(it) }
+    }
+
+    private fun queryTopApp() {
+        coroutineScope.launch(Dispatchers.Default) {
+            topAppQueryCount.incrementAndGet()
+            val topApp = getTopApp() ?: return@launch
+            taskStackChangeChannel.send(topApp)
         }
     }
 
@@ -680,16 +933,10 @@ class GameSpaceServiceDelegate @Inject constructor(
         logD {
             "Task windowing mode = ${focusedRootTask.windowingMode}"
         }
-        return when (focusedRootTask.windowingMode) {
-            WindowConfiguration.WINDOWING_MODE_MULTI_WINDOW,
-            WindowConfiguration.WINDOWING_MODE_SPLIT_SCREEN_PRIMARY,
-            WindowConfiguration.WINDOWING_MODE_SPLIT_SCREEN_SECONDARY,
-            WindowConfiguration.WINDOWING_MODE_FREEFORM -> {
-                // Game mode should not be enabled in any of these windowing modes
-                null
-            }
-            else -> focusedRootTask.topActivity?.packageName
-        }
+        return TaskState(
+            focusedRootTask.topActivity?.packageName,
+            focusedRootTask.windowingMode
+        ).topPackageName
     }
 
     private suspend fun onTopAppChanged(packageName: String) {
@@ -703,12 +950,12 @@ class GameSpaceServiceDelegate @Inject constructor(
     }
 
     private suspend fun checkTopAppAndUpdateState(packageName: String, topAppChanged: Boolean = false) {
-        val selectedPackages = stateMutex.withLock { gameSpacePackages.toMutableList() }
+        val isSelected = stateMutex.withLock { gameSpacePackages.contains(packageName) }
         logD {
-            "selectedPackages = $selectedPackages"
+            "$packageName isSelected = $isSelected"
         }
         // Top package is in user selected package list, start game mode.
-        if (selectedPackages.contains(packageName)) {
+        if (isSelected) {
             enableGameMode(packageName, topAppChanged)
         } else {
             val isDynamicMode = stateMutex.withLock { dynamicMode }
@@ -718,13 +965,11 @@ class GameSpaceServiceDelegate @Inject constructor(
                 logD {
                     "Dynamically adding $packageName to list"
                 }
-                selectedPackages.add(packageName)
-                withContext(Dispatchers.IO) {
-                    systemSettings.putStringForUser(
-                        Settings.System.GAMESPACE_PACKAGE_LIST,
-                        selectedPackages.joinToString(PACKAGE_DELIMITER),
-                        UserHandle.USER_CURRENT
-                    )
+                stateMutex.withLock {
+                    if (gameSpacePackages.add(packageName)) {
+                        unsavedPackages.add(packageName)
+                        schedulePersistPackagesLocked()
+                    }
                 }
                 enableGameMode(packageName, topAppChanged)
             } else {
@@ -748,6 +993,10 @@ class GameSpaceServiceDelegate @Inject constructor(
 
     private suspend fun enableGameModeLocked(packageName: String, topAppChanged: Boolean) {
         if (gameModeEnabled) {
+            if (gameModePackageName != packageName) {
+                gameModePackageName = packageName
+                publishStateLocked()
+            }
             if (topAppChanged) {
                 logD {
                     "Notify top app changed to binder"
@@ -800,23 +1049,52 @@ class GameSpaceServiceDelegate @Inject constructor(
             }
             registerCallStateChangeListener()
             gameModeEnabled = bound
+            gameModePackageName = packageName
             updatePrivacyIndicatorsLocked()
+            publishStateLocked()
         }
     }
 
     private fun isGame(packageName: String): Boolean {
+        appClassifications[packageName]?.let {
+            return it == ApplicationInfo.CATEGORY_GAME
+        }
+        val generation = classificationGeneration.get()
         val aInfo = try {
-            pm.getApplicationInfo(
-                packageName,
-                ApplicationInfoFlags.of(PackageManager.GET_META_DATA.toLong())
-            )
+            pm.getApplicationInfo(packageName, ApplicationInfoFlags.of(0))
         } catch (_: NameNotFoundException) {
             Log.e(TAG, "$packageName does not exist")
             return false
         }
+        appClassifications[packageName] = aInfo.category
+        if (classificationGeneration.get() != generation) {
+            // A package changed during the lookup, what was read may be outdated.
+            appClassifications.remove(packageName)
+        }
         return aInfo.category == ApplicationInfo.CATEGORY_GAME
     }
 
+    private fun primeAppClassifications() {
+        val generation = classificationGeneration.get()
+        val installedApps = try {
+            pm.getInstalledApplications(ApplicationInfoFlags.of(0))
+        } catch (e: RuntimeException) {
+            Log.e(TAG, "Failed to get installed applications", e)
+            return
+        }
+        installedApps.forEach {
+            appClassifications.putIfAbsent(it.packageName, it.category)
+        }
+        if (classificationGeneration.get() != generation) {
+            // Packages changed while priming, isGame looks them up again.
+            appClassifications.clear()
+            return
+        }
+        logD {
+            "Primed classifications of ${installedApps.size} packages"
+        }
+    }
+
     private suspend fun registerCallStateChangeListener() {
         if (callStateListeningJob?.isActive == true) return
         telephonyListenerManager.addCallStateListener(callstateListener)
@@ -867,7 +1145,7 @@ class GameSpaceServiceDelegate @Inject constructor(
         iGameSpaceService = null
         try {
             iStatusBarService.setBlockedGesturalNavigation(false)
-            gameSpaceConfig.putBoolean(CONFIG_BACK_GESTURE_LOCKED, false)
+            gameSpaceState.isBackGestureLocked = false
         } catch(e: RemoteException) {
             Log.e(TAG, "Failed to unblock gestural navigation", e)
         }
@@ -877,14 +1155,16 @@ class GameSpaceServiceDelegate @Inject constructor(
                 ringerModeChanged = false
             }
             recordingController.removeCallback(recordingCallback)
-            gameSpaceConfig.putBoolean(CONFIG_SCREEN_RECORD, false)
+            gameSpaceState.isScreenRecording = false
         }
         if (brightnessModeChanged) {
             setBrightnessMode(previousBrightnessMode)
             brightnessModeChanged = false
         }
         gameModeEnabled = false
+        gameModePackageName = null
         updatePrivacyIndicatorsLocked()
+        publishStateLocked()
     }
 
     private suspend fun unregisterCallStateChangeListener() {
@@ -902,16 +1182,54 @@ class GameSpaceServiceDelegate @Inject constructor(
     }
 
     fun disallowLaunchingFullScreenIntent() =
-        runBlocking {
-            stateMutex.withLock {
-                gameModeEnabled && disableFullscreenIntent
-            }
+        gameModeState.get().let { it.enabled && it.disableFullscreenIntent }
+
+    override fun dump(pw: PrintWriter, args: Array<out String>) {
+        pw.println("$TAG:")
+        pw.println("  gameModeState = ${gameModeState.get()}")
+        pw.println("  taskEvents = ${taskEventCount.get()}, topAppQueries = ${topAppQueryCount.get()}")
+        synchronized(taskLock) {
+            pw.println("  knownTasks = ${knownTasks.size()}, focusedTaskId = $focusedTaskId")
         }
+    }
+
+    private data class TaskState(
+        val packageName: String?,
+        val windowingMode: Int,
+        val generation: Int = 0
+    ) {
+        constructor(taskInfo: RunningTaskInfo, generation: Int) : this(
+            taskInfo.topActivity?.packageName,
+            taskInfo.configuration.windowConfiguration.windowingMode,
+            generation
+        )
+
+        // Game mode should not be enabled in any of these windowing modes
+        val topPackageName: String?
+            get() = when (windowingMode) {
+                WindowConfiguration.WINDOWING_MODE_MULTI_WINDOW,
+                WindowConfiguration.WINDOWING_MODE_SPLIT_SCREEN_PRIMARY,
+                WindowConfiguration.WINDOWING_MODE_SPLIT_SCREEN_SECONDARY,
+                WindowConfiguration.WINDOWING_MODE_FREEFORM -> null
+                else -> packageName
+            }
+    }
+
+    private data class GameModeState(
+        val enabled: Boolean = false,
+        val disableHeadsUp: Boolean = DEFAULT_GAMESPACE_DISABLE_HEADSUP,
+        val disableFullscreenIntent: Boolean = DEFAULT_GAMESPACE_DISABLE_FULLSCREEN_INTENT,
+        val hidePrivacyIndicators: Boolean = DEFAULT_GAMESPACE_HIDE_PRIVACY_INDICATORS,
+        val disableCallRinging: Boolean = DEFAULT_GAMESPACE_DISABLE_CALL_RINGING,
+        val packageName: String? = null
+    )
 
     companion object {
         private const val SERVICE_PERMISSION = "com.flamingo.permission.MANAGE_GAMESPACE"
 
         private const val PACKAGE_DELIMITER = ";"
+        private const val INVALID_TASK_ID = -1
+        private const val PERSIST_PACKAGES_DELAY_MS = 5000L
 
         private const val ACTION_STOP_GAME_MODE = "com.flamingo.gamespace.action.STOP_GAME_MODE"
 